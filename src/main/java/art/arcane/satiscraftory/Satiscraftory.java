@@ -24,6 +24,7 @@ import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockBehaviour;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.registries.*;
 import org.slf4j.Logger;
@@ -113,6 +114,7 @@ public class Satiscraftory {
         BLOCK_ENTITIES.register(modEventBus);
         CREATIVE_TABS.register(modEventBus);
         modEventBus.register(this);
+        context.registerConfig(ModConfig.Type.COMMON, SatiscraftoryConfig.SPEC);
     }
 
     private static RegistryObject<Block> registerConveyorBlock(String name, ConveyorTier tier) {
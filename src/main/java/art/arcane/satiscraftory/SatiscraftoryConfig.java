@@ -0,0 +1,24 @@
+package art.arcane.satiscraftory;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+
+public final class SatiscraftoryConfig {
+    private static final ForgeConfigSpec.Builder BUILDER = new ForgeConfigSpec.Builder();
+
+    public static final ForgeConfigSpec.BooleanValue DEDICATED_BELT_STORE = BUILDER
+            .comment("Keep conveyor contents in a per-dimension append log instead of chunk data.")
+            .define("dedicatedBeltStore", false);
+
+    public static final ForgeConfigSpec.DoubleValue DEGRADED_MODE_MSPT = BUILDER
+            .comment("Average server tick time in milliseconds above which conveyors, splitters and mergers step coarsely. 0 disables.")
+            .defineInRange("degradedModeMspt", 45.0D, 0.0D, 1000.0D);
+
+    public static final ForgeConfigSpec.IntValue DEGRADED_STEP_INTERVAL = BUILDER
+            .comment("Ticks between logistics updates while stepping coarsely; each update catches up on the missed steps.")
+            .defineInRange("degradedStepInterval", 4, 2, 20);
+
+    public static final ForgeConfigSpec SPEC = BUILDER.build();
+
+    private SatiscraftoryConfig() {
+    }
+}
@@ -1,11 +1,13 @@
 package art.arcane.satiscraftory.block;
 
 import art.arcane.satiscraftory.Satiscraftory;
+import art.arcane.satiscraftory.block.entity.ConveyorBlockEntity;
 import art.arcane.satiscraftory.block.entity.ConveyorEndBlockEntity;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.BaseEntityBlock;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Mirror;
@@ -66,6 +68,18 @@ public class ConveyorEndBlock extends BaseEntityBlock {
         return createTickerHelper(blockEntityType, Satiscraftory.CONVEYOR_END_BLOCK_ENTITY.get(), ConveyorEndBlockEntity::tick);
     }
 
+    @Override
+    public void onNeighborChange(BlockState state, LevelReader level, BlockPos pos, BlockPos neighbor) {
+        super.onNeighborChange(state, level, pos, neighbor);
+        // The belt outputs next to its end block, so the master hears about changes there.
+        if (!level.isClientSide()
+                && level.getBlockEntity(pos) instanceof ConveyorEndBlockEntity endBlockEntity
+                && endBlockEntity.getMasterPos() != null
+                && level.getBlockEntity(endBlockEntity.getMasterPos()) instanceof ConveyorBlockEntity conveyor) {
+            conveyor.onNeighborContentsChanged(neighbor);
+        }
+    }
+
     @Override
     public void onRemove(BlockState state, Level level, BlockPos pos, BlockState newState, boolean isMoving) {
         if (!state.is(newState.getBlock())) {
@@ -2,29 +2,41 @@ package art.arcane.satiscraftory.block;
 
 import art.arcane.satiscraftory.Satiscraftory;
 import art.arcane.satiscraftory.block.entity.SplitterBlockEntity;
+import art.arcane.satiscraftory.item.ConveyorItem;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.InteractionHand;
+import net.minecraft.world.InteractionResult;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.item.BlockItem;
+import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.item.context.BlockPlaceContext;
 import net.minecraft.world.level.BlockGetter;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.LevelReader;
 import net.minecraft.world.level.block.BaseEntityBlock;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Mirror;
 import net.minecraft.world.level.block.RenderShape;
 import net.minecraft.world.level.block.Rotation;
 import net.minecraft.world.level.block.entity.BlockEntity;
-import net.minecraft.world.level.block.entity.BlockEntityTicker;
-import net.minecraft.world.level.block.entity.BlockEntityType;
 import net.minecraft.world.level.block.state.BlockBehaviour;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.block.state.StateDefinition;
 import net.minecraft.world.level.block.state.properties.BlockStateProperties;
 import net.minecraft.world.level.block.state.properties.DirectionProperty;
+import net.minecraft.world.phys.BlockHitResult;
 import net.minecraft.world.phys.shapes.CollisionContext;
 import net.minecraft.world.phys.shapes.VoxelShape;
+import net.minecraftforge.event.entity.player.PlayerInteractEvent;
+import net.minecraftforge.eventbus.api.Event;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
 
 import javax.annotation.Nullable;
 
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
 public class SplitterBlock extends BaseEntityBlock {
     public static final DirectionProperty INPUT_FACING = BlockStateProperties.HORIZONTAL_FACING;
     private static final VoxelShape SHAPE = Block.box(0.0D, 0.0D, 0.0D, 16.0D, 8.0D, 16.0D);
@@ -40,6 +52,50 @@ public class SplitterBlock extends BaseEntityBlock {
         return defaultBlockState().setValue(INPUT_FACING, playerFacing);
     }
 
+    // Filters change only while sneaking, so plain clicks still place blocks and use tools against the splitter.
+    @Override
+    public InteractionResult use(BlockState state, Level level, BlockPos pos, Player player, InteractionHand hand, BlockHitResult hit) {
+        if (!configuresFilter(state, hit.getDirection(), player, player.getItemInHand(hand))) {
+            return InteractionResult.PASS;
+        }
+
+        if (level.isClientSide) {
+            return InteractionResult.SUCCESS;
+        }
+
+        Direction face = hit.getDirection();
+        if (level.getBlockEntity(pos) instanceof SplitterBlockEntity splitter) {
+            Component filter = splitter.configureFilter(face, player.getItemInHand(hand));
+            if (filter != null) {
+                String key = splitter.holdsUnmatchedItems()
+                        ? "message.satiscraftory.splitter_filter_holding"
+                        : "message.satiscraftory.splitter_filter";
+                player.displayClientMessage(Component.translatable(key,
+                        Component.translatable("direction.satiscraftory." + face.getName()), filter), true);
+                return InteractionResult.CONSUME;
+            }
+        }
+        return InteractionResult.PASS;
+    }
+
+    // Sneaking with something in hand skips use() unless the block asks for it.
+    @SubscribeEvent
+    public static void onRightClickBlock(PlayerInteractEvent.RightClickBlock event) {
+        BlockState state = event.getLevel().getBlockState(event.getPos());
+        if (state.getBlock() instanceof SplitterBlock
+                && configuresFilter(state, event.getHitVec().getDirection(), event.getEntity(), event.getItemStack())) {
+            event.setUseBlock(Event.Result.ALLOW);
+        }
+    }
+
+    private static boolean configuresFilter(BlockState state, Direction face, Player player, ItemStack held) {
+        return player.isShiftKeyDown()
+                && face.getAxis().isHorizontal()
+                && face != state.getValue(INPUT_FACING)
+                && !(held.getItem() instanceof ConveyorItem)
+                && !(held.getItem() instanceof BlockItem blockItem && blockItem.getBlock() instanceof SplitterBlock);
+    }
+
     @Override
     public RenderShape getRenderShape(BlockState state) {
         return RenderShape.MODEL;
@@ -71,13 +127,20 @@ public class SplitterBlock extends BaseEntityBlock {
         return new SplitterBlockEntity(pos, state);
     }
 
-    @Nullable
     @Override
-    public <T extends BlockEntity> BlockEntityTicker<T> getTicker(Level level, BlockState state, BlockEntityType<T> blockEntityType) {
-        if (level.isClientSide) {
-            return null;
+    public void neighborChanged(BlockState state, Level level, BlockPos pos, Block neighborBlock, BlockPos neighborPos, boolean movedByPiston) {
+        super.neighborChanged(state, level, pos, neighborBlock, neighborPos, movedByPiston);
+        if (!level.isClientSide && level.getBlockEntity(pos) instanceof SplitterBlockEntity splitter) {
+            splitter.onNeighborChanged(neighborPos);
+        }
+    }
+
+    @Override
+    public void onNeighborChange(BlockState state, LevelReader level, BlockPos pos, BlockPos neighbor) {
+        super.onNeighborChange(state, level, pos, neighbor);
+        if (!level.isClientSide() && level.getBlockEntity(pos) instanceof SplitterBlockEntity splitter) {
+            splitter.onNeighborChanged(neighbor);
         }
-        return createTickerHelper(blockEntityType, Satiscraftory.SPLITTER_BLOCK_ENTITY.get(), SplitterBlockEntity::serverTick);
     }
 
     @Override
@@ -0,0 +1,123 @@
+package art.arcane.satiscraftory.block.entity;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.FriendlyByteBuf;
+
+import javax.annotation.Nullable;
+
+// Versioned byte layout for belt runs: varint palette keys, run lengths, gaps between runs and
+// spacings, followed by zigzag delta-coded item ids. Palette stacks are saved separately as NBT.
+final class BeltContentsCodec {
+    static final int VERSION = 1;
+
+    private BeltContentsCodec() {
+    }
+
+    static byte[] encode(BeltItemQueue queue) {
+        int[] runs = queue.packRuns();
+        long[] ids = queue.copyIds();
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.buffer(8 + runs.length + (ids.length * 2)));
+        try {
+            buffer.writeByte(VERSION);
+            buffer.writeVarInt(queue.capacity());
+            buffer.writeVarInt(runs.length / BeltItemQueue.RUN_RECORD_SIZE);
+
+            int previousTail = queue.capacity();
+            for (int offset = 0; offset < runs.length; offset += BeltItemQueue.RUN_RECORD_SIZE) {
+                int length = runs[offset + 1];
+                int head = runs[offset + 2];
+                int spacing = runs[offset + 3];
+                buffer.writeVarInt(runs[offset]);
+                buffer.writeVarInt(length - 1);
+                buffer.writeVarInt(previousTail - 1 - head);
+                buffer.writeVarInt(spacing - 1);
+                previousTail = head - ((length - 1) * spacing);
+            }
+
+            long previousId = 0L;
+            for (long id : ids) {
+                long delta = id - previousId;
+                buffer.writeVarLong((delta << 1) ^ (delta >> 63));
+                previousId = id;
+            }
+
+            byte[] data = new byte[buffer.readableBytes()];
+            buffer.readBytes(data);
+            return data;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    @Nullable
+    static Contents decode(byte[] data) {
+        if (data.length == 0) {
+            return null;
+        }
+
+        FriendlyByteBuf buffer = new FriendlyByteBuf(Unpooled.wrappedBuffer(data));
+        try {
+            if (buffer.readByte() != VERSION) {
+                return null;
+            }
+
+            int capacity = buffer.readVarInt();
+            int runCount = buffer.readVarInt();
+            if (capacity <= 0 || runCount < 0 || runCount > capacity) {
+                return null;
+            }
+
+            int[] runs = new int[runCount * BeltItemQueue.RUN_RECORD_SIZE];
+            int itemCount = 0;
+            int previousTail = capacity;
+            for (int offset = 0; offset < runs.length; offset += BeltItemQueue.RUN_RECORD_SIZE) {
+                int key = buffer.readVarInt();
+                int length = buffer.readVarInt() + 1;
+                int head = previousTail - 1 - buffer.readVarInt();
+                int spacing = buffer.readVarInt() + 1;
+                itemCount += length;
+                if (length <= 0 || itemCount > capacity) {
+                    return null;
+                }
+
+                runs[offset] = key;
+                runs[offset + 1] = length;
+                runs[offset + 2] = head;
+                runs[offset + 3] = spacing;
+                previousTail = head - ((length - 1) * spacing);
+            }
+
+            long[] ids = new long[itemCount];
+            long previousId = 0L;
+            for (int index = 0; index < itemCount; index++) {
+                long zigzag = buffer.readVarLong();
+                previousId += (zigzag >>> 1) ^ -(zigzag & 1L);
+                ids[index] = previousId;
+            }
+
+            return new Contents(runs, ids);
+        } catch (RuntimeException exception) {
+            return null;
+        } finally {
+            buffer.release();
+        }
+    }
+
+    static final class Contents {
+        private final int[] runs;
+        private final long[] ids;
+
+        private Contents(int[] runs, long[] ids) {
+            this.runs = runs;
+            this.ids = ids;
+        }
+
+        int[] runs() {
+            return runs;
+        }
+
+        long[] ids() {
+            return ids;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package art.arcane.satiscraftory.block.entity;
+
+import net.minecraft.world.item.ItemStack;
+
+import java.util.Arrays;
+
+final class BeltItemPalette {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private ItemStack[] entries = new ItemStack[INITIAL_CAPACITY];
+    private int[] references = new int[INITIAL_CAPACITY];
+    private int size;
+
+    // Returns the shared single-item prototype for a key. Callers must never modify it.
+    ItemStack get(int key) {
+        if (key < 0 || key >= size) {
+            return ItemStack.EMPTY;
+        }
+        ItemStack entry = entries[key];
+        return entry == null ? ItemStack.EMPTY : entry;
+    }
+
+    int acquire(ItemStack stack) {
+        if (stack.isEmpty()) {
+            return -1;
+        }
+
+        int free = -1;
+        for (int key = 0; key < size; key++) {
+            ItemStack entry = entries[key];
+            if (entry == null) {
+                if (free < 0) {
+                    free = key;
+                }
+                continue;
+            }
+            if (ItemStack.isSameItemSameTags(entry, stack)) {
+                references[key]++;
+                return key;
+            }
+        }
+
+        if (free < 0) {
+            free = size;
+            if (free == entries.length) {
+                int capacity = entries.length * 2;
+                entries = Arrays.copyOf(entries, capacity);
+                references = Arrays.copyOf(references, capacity);
+            }
+            size++;
+        }
+
+        entries[free] = stack.copyWithCount(1);
+        references[free] = 1;
+        return free;
+    }
+
+    void retain(int key) {
+        if (key >= 0 && key < size && entries[key] != null) {
+            references[key]++;
+        }
+    }
+
+    void release(int key) {
+        if (key < 0 || key >= size || entries[key] == null) {
+            return;
+        }
+
+        if (--references[key] > 0) {
+            return;
+        }
+
+        entries[key] = null;
+        references[key] = 0;
+        while (size > 0 && entries[size - 1] == null) {
+            size--;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(entries, 0, size, null);
+        Arrays.fill(references, 0, size, 0);
+        size = 0;
+    }
+}
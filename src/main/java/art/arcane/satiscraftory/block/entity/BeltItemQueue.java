@@ -0,0 +1,394 @@
+package art.arcane.satiscraftory.block.entity;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+// Head-first belt contents stored as runs of one palette key at evenly spaced positions, so a
+// saturated single-item belt advances, saves and syncs as one record. Item ids stay per item in a
+// ring buffer because they never change while an item rides the belt. Both live in blocks of a
+// BeltStoragePool, which the conveyor moves into its level's shared pool once it is loaded.
+final class BeltItemQueue {
+    static final int RUN_RECORD_SIZE = 4;
+    private static final int INITIAL_RUN_CAPACITY = 4;
+
+    private final int capacity;
+    private BeltStoragePool pool;
+    private int runBase;
+    private int runCapacity = INITIAL_RUN_CAPACITY;
+    private int runCount;
+    private int size;
+
+    private int idBase;
+    private int idStart;
+
+    BeltItemQueue(int capacity, BeltStoragePool pool) {
+        this.capacity = Math.max(1, capacity);
+        this.pool = pool;
+        runBase = pool.allocateRuns(runCapacity);
+        idBase = pool.allocateIds(this.capacity);
+    }
+
+    BeltStoragePool pool() {
+        return pool;
+    }
+
+    // Copies the contents into blocks of another pool and returns the old blocks.
+    void moveTo(BeltStoragePool target) {
+        if (target == pool) {
+            return;
+        }
+
+        int targetRunBase = target.allocateRuns(runCapacity);
+        int targetIdBase = target.allocateIds(capacity);
+        System.arraycopy(pool.runKeys, runBase, target.runKeys, targetRunBase, runCount);
+        System.arraycopy(pool.runLengths, runBase, target.runLengths, targetRunBase, runCount);
+        System.arraycopy(pool.runHeads, runBase, target.runHeads, targetRunBase, runCount);
+        System.arraycopy(pool.runSpacings, runBase, target.runSpacings, targetRunBase, runCount);
+        System.arraycopy(pool.ids, idBase, target.ids, targetIdBase, capacity);
+        free();
+        pool = target;
+        runBase = targetRunBase;
+        idBase = targetIdBase;
+    }
+
+    // Returns the storage to the pool; the queue must not be used afterwards.
+    void free() {
+        pool.freeRuns(runBase, runCapacity);
+        pool.freeIds(idBase, capacity);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int runCount() {
+        return runCount;
+    }
+
+    int headKey() {
+        return runCount == 0 ? -1 : pool.runKeys[runBase];
+    }
+
+    int headPosition() {
+        return runCount == 0 ? -1 : pool.runHeads[runBase];
+    }
+
+    long headId() {
+        return size == 0 ? 0L : pool.ids[idBase + idStart];
+    }
+
+    int tailPosition() {
+        return runCount == 0 ? -1 : runTail(runCount - 1);
+    }
+
+    boolean canAcceptAtTail() {
+        return size < capacity && (runCount == 0 || runTail(runCount - 1) > 0);
+    }
+
+    int keyAt(int index) {
+        if (index < 0 || index >= size) {
+            return -1;
+        }
+
+        int[] lengths = pool.runLengths;
+        for (int run = 0; run < runCount; run++) {
+            if (index < lengths[runBase + run]) {
+                return pool.runKeys[runBase + run];
+            }
+            index -= lengths[runBase + run];
+        }
+        return -1;
+    }
+
+    long idAt(int index) {
+        if (index < 0 || index >= size) {
+            return 0L;
+        }
+        return pool.ids[idBase + ((idStart + index) % capacity)];
+    }
+
+    void setIdAt(int index, long id) {
+        if (index >= 0 && index < size) {
+            pool.ids[idBase + ((idStart + index) % capacity)] = id;
+        }
+    }
+
+    void pushTail(int key, long id) {
+        appendItem(key, 0, id);
+    }
+
+    // For items that entered on an earlier step of a coarse tick; the position must be below the tail.
+    void pushAt(int key, int position, long id) {
+        appendItem(key, position, id);
+    }
+
+    void popHead() {
+        if (runCount == 0) {
+            return;
+        }
+
+        pool.ids[idBase + idStart] = 0L;
+        idStart = (idStart + 1) % capacity;
+        size--;
+
+        int[] lengths = pool.runLengths;
+        if (--lengths[runBase] == 0) {
+            removeRun(0);
+            return;
+        }
+        pool.runHeads[runBase] -= pool.runSpacings[runBase];
+        if (lengths[runBase] == 1) {
+            pool.runSpacings[runBase] = 1;
+        }
+    }
+
+    // Same result as that many single steps: each item moves up to steps positions but stops one below
+    // the item ahead, or at the last position. Within a run the items that catch up end packed against
+    // that limit and the rest keep their spacing, so one pass from the head splits a run at most once.
+    boolean advanceBy(int steps) {
+        if (steps <= 0 || runCount == 0) {
+            return false;
+        }
+
+        boolean moved = false;
+        int limit = capacity - 1;
+        for (int run = 0; run < runCount; run++) {
+            int slot = runBase + run;
+            int head = pool.runHeads[slot];
+            int length = pool.runLengths[slot];
+            int spacing = pool.runSpacings[slot];
+            int reach = head + steps - limit;
+            int caught = reach < 0 ? 0 : spacing == 1 ? length : Math.min(length, (reach / (spacing - 1)) + 1);
+            if (caught == 0) {
+                pool.runHeads[slot] = head + steps;
+                moved = true;
+            } else if (caught == length) {
+                moved |= head != limit || spacing != 1;
+                pool.runHeads[slot] = limit;
+                pool.runSpacings[slot] = 1;
+            } else {
+                int rest = length - caught;
+                insertRun(run + 1, pool.runKeys[slot], rest, head - (caught * spacing) + steps, rest == 1 ? 1 : spacing);
+                // insertRun may have moved this queue's runs to a larger block.
+                slot = runBase + run;
+                pool.runHeads[slot] = limit;
+                pool.runLengths[slot] = caught;
+                pool.runSpacings[slot] = 1;
+                moved = true;
+                run++;
+            }
+            limit = runTail(run) - 1;
+        }
+
+        for (int run = runCount - 2; run >= 0; run--) {
+            tryMergeWithNext(run);
+        }
+        return moved;
+    }
+
+    int copyItems(@Nullable int[] keys, @Nullable int[] positions, @Nullable long[] itemIds) {
+        int index = 0;
+        for (int run = 0; run < runCount; run++) {
+            int position = pool.runHeads[runBase + run];
+            int length = pool.runLengths[runBase + run];
+            int spacing = pool.runSpacings[runBase + run];
+            for (int i = 0; i < length; i++) {
+                if (keys != null) {
+                    keys[index] = pool.runKeys[runBase + run];
+                }
+                if (positions != null) {
+                    positions[index] = position;
+                }
+                if (itemIds != null) {
+                    itemIds[index] = pool.ids[idBase + ((idStart + index) % capacity)];
+                }
+                position -= spacing;
+                index++;
+            }
+        }
+        return index;
+    }
+
+    // Positions are clamped into a strictly descending layout that fits; extra items are ignored.
+    void rebuild(int[] keys, int[] positions, long[] itemIds, int count) {
+        clear();
+        count = Math.min(count, capacity);
+
+        int previousMaximum = capacity - 1;
+        for (int index = 0; index < count; index++) {
+            int remaining = count - index - 1;
+            int lower = Math.min(capacity - 1, remaining);
+            int upper = Math.max(lower, previousMaximum);
+            int position = Math.max(lower, Math.min(upper, positions[index]));
+            appendItem(keys[index], position, itemIds[index]);
+            previousMaximum = Math.max(0, position - 1);
+        }
+    }
+
+    // Trusted restore for runs written by packRuns(); callers check isNormalizedLayout() first.
+    void restoreRuns(int[] runs, long[] itemIds) {
+        clear();
+        int count = runs.length / RUN_RECORD_SIZE;
+        if (runCapacity < count) {
+            pool.freeRuns(runBase, runCapacity);
+            runCapacity = BeltStoragePool.blockSize(count);
+            runBase = pool.allocateRuns(runCapacity);
+        }
+
+        for (int run = 0; run < count; run++) {
+            int offset = run * RUN_RECORD_SIZE;
+            pool.runKeys[runBase + run] = runs[offset];
+            pool.runLengths[runBase + run] = runs[offset + 1];
+            pool.runHeads[runBase + run] = runs[offset + 2];
+            pool.runSpacings[runBase + run] = runs[offset + 3];
+            size += runs[offset + 1];
+        }
+        runCount = count;
+        System.arraycopy(itemIds, 0, pool.ids, idBase, size);
+    }
+
+    static boolean isNormalizedLayout(int[] runs, int itemCount, int capacity) {
+        if (runs.length % RUN_RECORD_SIZE != 0 || itemCount > capacity) {
+            return false;
+        }
+
+        int total = 0;
+        int maximum = capacity - 1;
+        for (int offset = 0; offset < runs.length; offset += RUN_RECORD_SIZE) {
+            int length = runs[offset + 1];
+            int head = runs[offset + 2];
+            int spacing = runs[offset + 3];
+            if (length < 1 || spacing < 1 || (length == 1 && spacing != 1) || head > maximum) {
+                return false;
+            }
+
+            int tail = head - ((length - 1) * spacing);
+            if (tail < 0) {
+                return false;
+            }
+            total += length;
+            maximum = tail - 1;
+        }
+        return total == itemCount;
+    }
+
+    void clear() {
+        runCount = 0;
+        size = 0;
+        idStart = 0;
+        Arrays.fill(pool.ids, idBase, idBase + capacity, 0L);
+    }
+
+    int[] packRuns() {
+        int[] packed = new int[runCount * RUN_RECORD_SIZE];
+        for (int run = 0; run < runCount; run++) {
+            int offset = run * RUN_RECORD_SIZE;
+            packed[offset] = pool.runKeys[runBase + run];
+            packed[offset + 1] = pool.runLengths[runBase + run];
+            packed[offset + 2] = pool.runHeads[runBase + run];
+            packed[offset + 3] = pool.runSpacings[runBase + run];
+        }
+        return packed;
+    }
+
+    long[] copyIds() {
+        long[] copy = new long[size];
+        for (int index = 0; index < size; index++) {
+            copy[index] = pool.ids[idBase + ((idStart + index) % capacity)];
+        }
+        return copy;
+    }
+
+    private int runTail(int run) {
+        int slot = runBase + run;
+        return pool.runHeads[slot] - ((pool.runLengths[slot] - 1) * pool.runSpacings[slot]);
+    }
+
+    private void appendItem(int key, int position, long id) {
+        pool.ids[idBase + ((idStart + size) % capacity)] = id;
+        size++;
+
+        if (runCount > 0) {
+            int last = runBase + runCount - 1;
+            if (pool.runKeys[last] == key) {
+                int gap = runTail(runCount - 1) - position;
+                if (gap >= 1 && (pool.runLengths[last] == 1 || pool.runSpacings[last] == gap)) {
+                    pool.runSpacings[last] = gap;
+                    pool.runLengths[last]++;
+                    return;
+                }
+            }
+        }
+
+        insertRun(runCount, key, 1, position, 1);
+    }
+
+    private void tryMergeWithNext(int first) {
+        int second = first + 1;
+        if (first < 0 || second >= runCount || pool.runKeys[runBase + first] != pool.runKeys[runBase + second]) {
+            return;
+        }
+
+        int[] lengths = pool.runLengths;
+        int[] spacings = pool.runSpacings;
+        int gap = runTail(first) - pool.runHeads[runBase + second];
+        if (gap < 1
+                || (lengths[runBase + first] > 1 && spacings[runBase + first] != gap)
+                || (lengths[runBase + second] > 1 && spacings[runBase + second] != gap)) {
+            return;
+        }
+
+        lengths[runBase + first] += lengths[runBase + second];
+        spacings[runBase + first] = gap;
+        removeRun(second);
+    }
+
+    private void insertRun(int run, int key, int length, int head, int spacing) {
+        if (runCount == runCapacity) {
+            int grownCapacity = runCapacity * 2;
+            int grownBase = pool.allocateRuns(grownCapacity);
+            System.arraycopy(pool.runKeys, runBase, pool.runKeys, grownBase, runCount);
+            System.arraycopy(pool.runLengths, runBase, pool.runLengths, grownBase, runCount);
+            System.arraycopy(pool.runHeads, runBase, pool.runHeads, grownBase, runCount);
+            System.arraycopy(pool.runSpacings, runBase, pool.runSpacings, grownBase, runCount);
+            pool.freeRuns(runBase, runCapacity);
+            runBase = grownBase;
+            runCapacity = grownCapacity;
+        }
+
+        int from = runBase + run;
+        int tail = runCount - run;
+        if (tail > 0) {
+            System.arraycopy(pool.runKeys, from, pool.runKeys, from + 1, tail);
+            System.arraycopy(pool.runLengths, from, pool.runLengths, from + 1, tail);
+            System.arraycopy(pool.runHeads, from, pool.runHeads, from + 1, tail);
+            System.arraycopy(pool.runSpacings, from, pool.runSpacings, from + 1, tail);
+        }
+
+        pool.runKeys[from] = key;
+        pool.runLengths[from] = length;
+        pool.runHeads[from] = head;
+        pool.runSpacings[from] = spacing;
+        runCount++;
+    }
+
+    private void removeRun(int run) {
+        int from = runBase + run;
+        int tail = runCount - run - 1;
+        if (tail > 0) {
+            System.arraycopy(pool.runKeys, from + 1, pool.runKeys, from, tail);
+            System.arraycopy(pool.runLengths, from + 1, pool.runLengths, from, tail);
+            System.arraycopy(pool.runHeads, from + 1, pool.runHeads, from, tail);
+            System.arraycopy(pool.runSpacings, from + 1, pool.runSpacings, from, tail);
+        }
+        runCount--;
+    }
+}
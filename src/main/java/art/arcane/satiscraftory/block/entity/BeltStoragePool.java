@@ -0,0 +1,156 @@
+package art.arcane.satiscraftory.block.entity;
+
+import art.arcane.satiscraftory.Satiscraftory;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Level-wide storage behind every BeltItemQueue: run fields and item ids of all belts sit in a few
+// shared primitive arrays instead of small arrays per belt. Blocks are handed out in power-of-two
+// sizes and recycled through one free list per size. Only server levels get a shared pool, so it is
+// touched from the server thread alone; client belts keep detached storage.
+//
+// Blocks are never moved, so the arrays only grow while belts are loaded: they hold at most the
+// peak number of live blocks, each under twice its queue's size, plus free blocks stranded in
+// sizes no belt asks for any more. A block freed at the top lowers the top again, and once the
+// last belt of the level is unloaded the pool starts over at its initial size.
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class BeltStoragePool {
+    private static final Map<ServerLevel, BeltStoragePool> POOLS = new IdentityHashMap<>();
+    private static final int MIN_BLOCK_SIZE = 4;
+    private static final int LEVEL_INITIAL_CAPACITY = 4096;
+
+    int[] runKeys;
+    int[] runLengths;
+    int[] runHeads;
+    int[] runSpacings;
+    long[] ids;
+
+    private final int initialCapacity;
+    private int runTop;
+    private int idTop;
+    private int liveRunBlocks;
+    private int liveIdBlocks;
+    private final IntArrayList[] freeRuns = new IntArrayList[Integer.SIZE];
+    private final IntArrayList[] freeIds = new IntArrayList[Integer.SIZE];
+
+    private BeltStoragePool(int initialCapacity) {
+        this.initialCapacity = initialCapacity;
+        runKeys = new int[initialCapacity];
+        runLengths = new int[initialCapacity];
+        runHeads = new int[initialCapacity];
+        runSpacings = new int[initialCapacity];
+        ids = new long[initialCapacity];
+    }
+
+    static BeltStoragePool get(ServerLevel level) {
+        return POOLS.computeIfAbsent(level, ignored -> new BeltStoragePool(LEVEL_INITIAL_CAPACITY));
+    }
+
+    // Private storage for a queue that is not in a level yet, or no longer is.
+    static BeltStoragePool detached() {
+        return new BeltStoragePool(0);
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel level) {
+            POOLS.remove(level);
+        }
+    }
+
+    static int blockSize(int size) {
+        int clamped = Math.max(MIN_BLOCK_SIZE, size);
+        return Integer.highestOneBit(clamped - 1) << 1;
+    }
+
+    // Callers re-read the arrays afterwards; they are replaced when the pool grows.
+    int allocateRuns(int size) {
+        int blockSize = blockSize(size);
+        liveRunBlocks++;
+        IntArrayList free = freeRuns[sizeClass(blockSize)];
+        if (free != null && !free.isEmpty()) {
+            return free.popInt();
+        }
+
+        int offset = runTop;
+        runTop += blockSize;
+        if (runTop > runKeys.length) {
+            int grown = Math.max(runTop, runKeys.length * 2);
+            runKeys = Arrays.copyOf(runKeys, grown);
+            runLengths = Arrays.copyOf(runLengths, grown);
+            runHeads = Arrays.copyOf(runHeads, grown);
+            runSpacings = Arrays.copyOf(runSpacings, grown);
+        }
+        return offset;
+    }
+
+    void freeRuns(int offset, int size) {
+        int blockSize = blockSize(size);
+        if (--liveRunBlocks == 0) {
+            runTop = 0;
+            Arrays.fill(freeRuns, null);
+            if (runKeys.length > initialCapacity) {
+                runKeys = new int[initialCapacity];
+                runLengths = new int[initialCapacity];
+                runHeads = new int[initialCapacity];
+                runSpacings = new int[initialCapacity];
+            }
+        } else if (offset + blockSize == runTop) {
+            runTop = offset;
+        } else {
+            release(freeRuns, offset, blockSize);
+        }
+    }
+
+    int allocateIds(int size) {
+        int blockSize = blockSize(size);
+        liveIdBlocks++;
+        IntArrayList free = freeIds[sizeClass(blockSize)];
+        int offset;
+        if (free != null && !free.isEmpty()) {
+            offset = free.popInt();
+        } else {
+            offset = idTop;
+            idTop += blockSize;
+            if (idTop > ids.length) {
+                ids = Arrays.copyOf(ids, Math.max(idTop, ids.length * 2));
+            }
+        }
+        Arrays.fill(ids, offset, offset + blockSize, 0L);
+        return offset;
+    }
+
+    void freeIds(int offset, int size) {
+        int blockSize = blockSize(size);
+        if (--liveIdBlocks == 0) {
+            idTop = 0;
+            Arrays.fill(freeIds, null);
+            if (ids.length > initialCapacity) {
+                ids = new long[initialCapacity];
+            }
+        } else if (offset + blockSize == idTop) {
+            idTop = offset;
+        } else {
+            release(freeIds, offset, blockSize);
+        }
+    }
+
+    private static void release(IntArrayList[] freeLists, int offset, int blockSize) {
+        int sizeClass = sizeClass(blockSize);
+        if (freeLists[sizeClass] == null) {
+            freeLists[sizeClass] = new IntArrayList();
+        }
+        freeLists[sizeClass].add(offset);
+    }
+
+    private static int sizeClass(int blockSize) {
+        return Integer.numberOfTrailingZeros(blockSize);
+    }
+}
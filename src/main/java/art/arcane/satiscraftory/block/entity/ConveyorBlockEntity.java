@@ -1,11 +1,21 @@
 package art.arcane.satiscraftory.block.entity;
 
 import art.arcane.satiscraftory.Satiscraftory;
+import art.arcane.satiscraftory.SatiscraftoryConfig;
 import art.arcane.satiscraftory.block.ConveyorBlock;
 import art.arcane.satiscraftory.block.ConveyorEndBlock;
+import art.arcane.satiscraftory.data.BeltContentStore;
+import art.arcane.satiscraftory.data.ConveyorItemIdAllocator;
+import art.arcane.satiscraftory.logistics.DirtyBlockEntityTracker;
+import art.arcane.satiscraftory.logistics.LogisticsTickScheduler;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.NbtUtils;
 import net.minecraft.nbt.Tag;
 import net.minecraft.network.Connection;
@@ -21,13 +31,16 @@ import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.phys.AABB;
 import net.minecraft.world.phys.Vec3;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.ForgeCapabilities;
 import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.event.level.ChunkDataEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.items.IItemHandler;
-import net.minecraftforge.items.ItemStackHandler;
 
 import javax.annotation.Nullable;
 import java.lang.reflect.Field;
@@ -35,33 +48,71 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumMap;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Objects;
 
-public class ConveyorBlockEntity extends BlockEntity {
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class ConveyorBlockEntity extends BlockEntity
+        implements ConveyorItemHandoff, DirtyBlockEntityTracker.Flushable, LogisticsTickScheduler.Node {
     private static final int SLOTS_PER_BLOCK = 3;
     private static final int DEFAULT_TRAVEL_TICKS_PER_BLOCK = 60;
     private static final int LENGTH_SAMPLE_SEGMENTS = 80;
+    private static final int FACADE_SLOTS = 2;
+    private static final int FACADE_EXTRACT_SLOT = 0;
+    private static final int FACADE_INSERT_SLOT = 1;
+    private static final int INPUT_HIT_MEMORY_TICKS = 40;
+    private static final int INBOX_CAPACITY = 64;
+    private static final int INPUT_EMPTY_BACKOFF_MAX_TICKS = 20;
+    private static final int OUTBOX_BLOCKED_BACKOFF_MAX_TICKS = 20;
+    private static final int MAX_STEP_BUDGET = 512;
+    private static final int PULL_TAKEN = 0;
+    private static final int PULL_EMPTY = 1;
+    private static final int PULL_REFUSED = 2;
+    private static final int GEOMETRY_VERSION = 1;
+    private static final long END_MARKER_VALIDATION_INTERVAL_TICKS = 20L;
+    private static final long END_MARKER_LOAD_SPREAD_TICKS = 100L;
     private static final int MAX_CLIENT_PREDICTION_STEPS = 256;
     private static final double VISUAL_RANGE_BLOCKS = 16.0D;
     private static final double EDGE_OFFSET = 0.5D;
     private static final double ITEM_Y_OFFSET = 0.08D;
+    private static final long VISUAL_HANDOFF_TICKS = 40L;
 
     private static final String END_POS_TAG = "end_pos";
     private static final String END_FACING_TAG = "end_facing";
     private static final String BELT_LENGTH_BLOCKS_TAG = "belt_length_blocks";
     private static final String BUFFER_SLOTS_TAG = "buffer_slots";
     private static final String INVENTORY_TAG = "inventory";
+    private static final String INVENTORY_ITEMS_TAG = "Items";
+    private static final String INVENTORY_SLOT_TAG = "Slot";
+    private static final String INVENTORY_SIZE_TAG = "Size";
     private static final String RENDER_POSITIONS_TAG = "render_positions";
+    private static final String PALETTE_TAG = "palette";
+    private static final String ITEM_RUNS_TAG = "item_runs";
+    private static final String BELT_DATA_TAG = "belt_data";
+    // Set when the contents were left out of the chunk for the belt store.
+    private static final String BELT_STORE_TAG = "belt_store";
+    private static final String BELT_STORE_GENERATION_TAG = "belt_store_generation";
+    // Set when the contents are inline but the store may still hold an older entry.
+    private static final String BELT_STORE_ENTRY_TAG = "belt_store_entry";
+    private static final String CHUNK_BLOCK_ENTITIES_TAG = "block_entities";
+    private static final String INBOX_TAG = "inbox";
+    private static final String OUTBOX_TAG = "outbox";
+    private static final String OUTBOX_IDS_TAG = "outbox_ids";
+    private static final String HANDOFFS_TAG = "handoffs";
+    private static final String HANDOFF_IDS_TAG = "handoff_ids";
+    private static final String NORMALIZED_TAG = "normalized";
+    // Everything writeContents() puts in a tag.
+    private static final String[] CONTENT_TAGS = {PALETTE_TAG, BELT_DATA_TAG, NORMALIZED_TAG};
+    private static final String GEOMETRY_TAG = "geometry";
     private static final String ITEM_IDS_TAG = "item_ids";
     private static final String STEP_ACCUMULATOR_TAG = "step_accumulator";
     private static final String TRAVEL_TICKS_PER_BLOCK_TAG = "travel_ticks_per_block";
     private static final String SYNC_REVISION_TAG = "sync_revision";
 
-    private static long NEXT_ITEM_ID = 1L;
+    private static final Long2ObjectOpenHashMap<SplineVisualItemEntity> CLIENT_VISUALS_BY_ITEM_ID = new Long2ObjectOpenHashMap<>();
+    private static final Long2ObjectOpenHashMap<SplineVisualItemEntity> PARKED_CLIENT_VISUALS = new Long2ObjectOpenHashMap<>();
+    private static long lastParkedVisualSweepTick = Long.MIN_VALUE;
 
     @Nullable
     private BlockPos endPos;
@@ -70,43 +121,71 @@ public class ConveyorBlockEntity extends BlockEntity {
     private int bufferSlots = SLOTS_PER_BLOCK;
     private int travelTicksPerBlock = DEFAULT_TRAVEL_TICKS_PER_BLOCK;
 
-    private ItemStackHandler inventory;
-    private int[] renderPositions;
-    private long[] itemIds;
+    private final BeltItemPalette palette = new BeltItemPalette();
+    private BeltItemQueue queue;
+    // Items accepted ahead of the belt and fed onto the tail one per free step.
+    private ItemStack inbox = ItemStack.EMPTY;
+    // Head items bound for a plain item handler, collected over a tick and inserted in one pass.
+    private ItemStack outbox = ItemStack.EMPTY;
+    // Ids of the outbox items, oldest first.
+    private final LongArrayList outboxIds = new LongArrayList();
+    // Items handed over while the tail was taken, fed on the next visit where they would have entered;
+    // neighbouring items of one kind share a stack. Ids stay one per item.
+    private final ObjectArrayList<ItemStack> handoffs = new ObjectArrayList<>();
+    private final LongArrayList handoffIds = new LongArrayList();
+    @Nullable
+    private transient IItemHandler outputBatchHandler;
+    private transient boolean outputBatchResolved;
+    private transient boolean outputBatchOpen;
 
     private boolean suppressDirtyCallbacks;
+    private transient boolean hasUnassignedItemIds;
+    private boolean storedExternally;
+    private boolean pendingStoreLoad;
+    private transient int storeGeneration = BeltContentStore.ANY_GENERATION;
+    private transient boolean chunkUnloading;
+    // Items of stacked legacy slots that found no free slot, dropped once the belt is in a level.
+    @Nullable
+    private transient List<ItemStack> legacyOverflow;
+    @Nullable
+    private transient ConveyorItemIdAllocator itemIdAllocator;
 
     private LazyOptional<IItemHandler> unsidedCapability = LazyOptional.empty();
-    private final Map<Direction, LazyOptional<IItemHandler>> sidedCapabilities = new EnumMap<>(Direction.class);
+    // Only belts something actually queries from a side pay for the map.
+    @Nullable
+    private Map<Direction, LazyOptional<IItemHandler>> sidedCapabilities;
 
-    private final Map<Long, SplineVisualItemEntity> clientVisualItems = new HashMap<>();
     private long lastAccumulatorTick = Long.MIN_VALUE;
     private long lastSyncPacketGameTime = Long.MIN_VALUE;
-    private double stepAccumulator;
+    // Whole and partial steps as an exact fraction over stepProgressScale, which tracks
+    // getConfiguredTravelTicks(); each tick adds bufferSlots, so steps land on exact ticks.
+    private long stepProgress;
+    private transient long stepProgressScale = 1L;
     private long syncRevision;
     private boolean needsSync;
-    private transient long nextEndMarkerValidationTick = Long.MIN_VALUE;
-
-    private transient long lastClientAppliedRevision = Long.MIN_VALUE;
-    private transient long clientSnapshotGameTime = Long.MIN_VALUE;
-
     @Nullable
-    private transient Method clientPutNonPlayerEntityMethod;
+    private transient IItemHandler inputScanHandler;
+    private transient int inputScanCursor;
+    private transient int inputLastHitSlot = -1;
+    private transient long inputLastHitTick = Long.MIN_VALUE;
+    private transient int inputEmptyBackoffTicks;
+    private transient long inputEmptyBackoffUntil = Long.MIN_VALUE;
+    private transient boolean refusedUpstreamItem;
+    private transient int outboxBackoffTicks;
+    private transient long outboxBackoffUntil = Long.MIN_VALUE;
+    private transient long nextEndMarkerValidationTick = Long.MIN_VALUE;
     @Nullable
-    private transient Method clientRemoveEntityMethod;
-    private transient boolean resolvedClientEntityMethods;
+    private transient Direction lengthStartFacing;
+    private transient boolean capabilitiesValid = true;
+
+    // Client-only visual and prediction state, created on first use so server belts never carry it.
     @Nullable
-    private transient Field itemBobOffsField;
-    private transient boolean resolvedItemBobField;
+    private transient ClientState clientState;
 
     public ConveyorBlockEntity(BlockPos pos, BlockState blockState) {
         super(Satiscraftory.CONVEYOR_BLOCK_ENTITY.get(), pos, blockState);
         travelTicksPerBlock = resolveTravelTicksPerBlock(blockState);
-        inventory = createInventory(bufferSlots);
-        renderPositions = new int[bufferSlots];
-        Arrays.fill(renderPositions, -1);
-        itemIds = new long[bufferSlots];
-        rebuildCapabilities();
+        resetQueue();
     }
 
     @Nullable
@@ -126,14 +205,20 @@ public class ConveyorBlockEntity extends BlockEntity {
         return travelTicksPerBlock;
     }
 
+    public IItemHandler getDebugSlotView() {
+        return new DebugSlotView();
+    }
+
     public void setEndData(BlockPos endPos, Direction endFacing) {
         BlockPos previousEndPos = this.endPos;
         this.endPos = endPos.immutable();
         this.endFacing = endFacing.getAxis().isHorizontal() ? endFacing : Direction.NORTH;
         recalculateLengthAndResize(false);
+        lengthStartFacing = getFacing(getBlockState());
         nextEndMarkerValidationTick = Long.MIN_VALUE;
         if (level != null && !level.isClientSide) {
             updateLinkedEndMarker(previousEndPos);
+            LogisticsTickScheduler.invalidate(this);
         }
         setChanged();
         syncToClient();
@@ -149,38 +234,140 @@ public class ConveyorBlockEntity extends BlockEntity {
     @Override
     public void invalidateCaps() {
         super.invalidateCaps();
+        capabilitiesValid = false;
         unsidedCapability.invalidate();
-        for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
-            capability.invalidate();
+        if (sidedCapabilities != null) {
+            for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
+                capability.invalidate();
+            }
+            sidedCapabilities = null;
         }
-        sidedCapabilities.clear();
     }
 
     @Override
     public void reviveCaps() {
         super.reviveCaps();
-        rebuildCapabilities();
+        capabilitiesValid = true;
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        if (level instanceof ServerLevel serverLevel) {
+            queue.moveTo(BeltStoragePool.get(serverLevel));
+        }
+        if (pendingStoreLoad && level instanceof ServerLevel serverLevel) {
+            loadFromStore(serverLevel);
+        }
+        reserveLoadedItemIds();
+        dropLegacyOverflow();
+        LogisticsTickScheduler.register(this);
+    }
+
+    @Override
+    public void onChunkUnloaded() {
+        super.onChunkUnloaded();
+        chunkUnloading = true;
     }
 
     @Override
     public void setRemoved() {
         clearClientVisuals();
+        if (level instanceof ServerLevel) {
+            LogisticsTickScheduler.unregister(this);
+        }
+        if (!chunkUnloading && storedExternally && level instanceof ServerLevel serverLevel) {
+            // The block itself is gone, by whatever means, so its store entry must go with it.
+            BeltContentStore.get(serverLevel).remove(worldPosition);
+            storedExternally = false;
+        }
+        // The contents stay readable after removal, but no longer hold blocks of the level pool.
+        queue.moveTo(BeltStoragePool.detached());
         super.setRemoved();
     }
 
     @Override
     protected void saveAdditional(CompoundTag tag) {
         super.saveAdditional(tag);
+        writeBeltState(tag);
+        if (!inbox.isEmpty()) {
+            tag.put(INBOX_TAG, inbox.save(new CompoundTag()));
+        }
+        if (!outbox.isEmpty()) {
+            tag.put(OUTBOX_TAG, outbox.save(new CompoundTag()));
+            tag.putLongArray(OUTBOX_IDS_TAG, outboxIds.toLongArray());
+        }
+        if (!handoffIds.isEmpty()) {
+            ListTag staged = new ListTag();
+            for (ItemStack stack : handoffs) {
+                staged.add(stack.save(new CompoundTag()));
+            }
+            tag.put(HANDOFFS_TAG, staged);
+            tag.putLongArray(HANDOFF_IDS_TAG, handoffIds.toLongArray());
+        }
+        // Contents always go inline here; only chunk saves move them to the store, see onChunkSave().
+        writeContents(tag);
+    }
+
+    // Pick-block, structure and command saves go through saveAdditional() as well, and their tags may be
+    // loaded at another position, so the store is only touched for the tags a chunk actually writes.
+    @SubscribeEvent
+    public static void onChunkSave(ChunkDataEvent.Save event) {
+        if (!(event.getLevel() instanceof ServerLevel serverLevel) || !(event.getChunk() instanceof LevelChunk chunk)) {
+            return;
+        }
+
+        ListTag blockEntities = event.getData().getList(CHUNK_BLOCK_ENTITIES_TAG, Tag.TAG_COMPOUND);
+        for (int index = 0; index < blockEntities.size(); index++) {
+            CompoundTag entry = blockEntities.getCompound(index);
+            if (chunk.getBlockEntities().get(BlockEntity.getPosFromTag(entry)) instanceof ConveyorBlockEntity conveyor) {
+                conveyor.moveContentsToStore(serverLevel, entry);
+            }
+        }
+    }
+
+    private void moveContentsToStore(ServerLevel serverLevel, CompoundTag tag) {
+        if (!SatiscraftoryConfig.DEDICATED_BELT_STORE.get()) {
+            if (storedExternally) {
+                BeltContentStore.get(serverLevel).remove(worldPosition);
+                storedExternally = false;
+            }
+            return;
+        }
+
+        CompoundTag contents = new CompoundTag();
+        for (String key : CONTENT_TAGS) {
+            Tag value = tag.get(key);
+            if (value != null) {
+                contents.put(key, value);
+            }
+        }
+        storedExternally = true;
+        int generation = BeltContentStore.get(serverLevel).write(worldPosition, contents);
+        if (generation == BeltContentStore.NOT_DURABLE) {
+            // Until the log holds these contents on disk, the chunk carries them as well.
+            tag.putBoolean(BELT_STORE_ENTRY_TAG, true);
+            return;
+        }
+
+        for (String key : CONTENT_TAGS) {
+            tag.remove(key);
+        }
+        tag.putBoolean(BELT_STORE_TAG, true);
+        tag.putInt(BELT_STORE_GENERATION_TAG, generation);
+    }
+
+    private void writeBeltState(CompoundTag tag) {
         if (endPos != null) {
             tag.put(END_POS_TAG, NbtUtils.writeBlockPos(endPos));
         }
         tag.putString(END_FACING_TAG, endFacing.getName());
         tag.putInt(BELT_LENGTH_BLOCKS_TAG, beltLengthBlocks);
         tag.putInt(BUFFER_SLOTS_TAG, bufferSlots);
-        tag.put(INVENTORY_TAG, inventory.serializeNBT());
-        tag.putIntArray(RENDER_POSITIONS_TAG, renderPositions);
-        tag.putLongArray(ITEM_IDS_TAG, itemIds);
-        tag.putDouble(STEP_ACCUMULATOR_TAG, stepAccumulator);
+        tag.putInt(GEOMETRY_TAG, geometryKey());
+        if (stepProgress != 0L) {
+            tag.putDouble(STEP_ACCUMULATOR_TAG, getStepAccumulator());
+        }
         tag.putInt(TRAVEL_TICKS_PER_BLOCK_TAG, travelTicksPerBlock);
         tag.putLong(SYNC_REVISION_TAG, syncRevision);
     }
@@ -189,7 +376,7 @@ public class ConveyorBlockEntity extends BlockEntity {
     public void load(CompoundTag tag) {
         long incomingRevision = tag.contains(SYNC_REVISION_TAG) ? tag.getLong(SYNC_REVISION_TAG) : 0L;
         boolean isClient = level != null && level.isClientSide;
-        if (isClient && incomingRevision < lastClientAppliedRevision) {
+        if (isClient && clientState != null && incomingRevision < clientState.lastClientAppliedRevision) {
             return;
         }
 
@@ -215,54 +402,58 @@ public class ConveyorBlockEntity extends BlockEntity {
                 : beltLengthBlocks * SLOTS_PER_BLOCK);
 
         suppressDirtyCallbacks = true;
-        inventory = createInventory(loadedSlots);
-        if (tag.contains(INVENTORY_TAG, Tag.TAG_COMPOUND)) {
-            inventory.deserializeNBT(tag.getCompound(INVENTORY_TAG));
-        }
-        bufferSlots = Math.max(1, inventory.getSlots());
-
-        renderPositions = new int[bufferSlots];
-        Arrays.fill(renderPositions, -1);
-        if (tag.contains(RENDER_POSITIONS_TAG, Tag.TAG_INT_ARRAY)) {
-            int[] loadedPositions = tag.getIntArray(RENDER_POSITIONS_TAG);
-            for (int slot = 0; slot < Math.min(bufferSlots, loadedPositions.length); slot++) {
-                renderPositions[slot] = clampRenderPosition(loadedPositions[slot]);
-            }
-        }
-
-        itemIds = new long[bufferSlots];
-        if (tag.contains(ITEM_IDS_TAG, Tag.TAG_LONG_ARRAY)) {
-            long[] loadedIds = tag.getLongArray(ITEM_IDS_TAG);
-            System.arraycopy(loadedIds, 0, itemIds, 0, Math.min(bufferSlots, loadedIds.length));
-        }
+        CompoundTag inventoryTag = tag.getCompound(INVENTORY_TAG);
+        if (inventoryTag.contains(INVENTORY_SIZE_TAG, Tag.TAG_INT)) {
+            loadedSlots = Math.max(1, inventoryTag.getInt(INVENTORY_SIZE_TAG));
+        }
+        bufferSlots = loadedSlots;
+        boolean normalized = readContents(tag);
+        inbox = tag.contains(INBOX_TAG, Tag.TAG_COMPOUND) ? ItemStack.of(tag.getCompound(INBOX_TAG)) : ItemStack.EMPTY;
+        outbox = tag.contains(OUTBOX_TAG, Tag.TAG_COMPOUND) ? ItemStack.of(tag.getCompound(OUTBOX_TAG)) : ItemStack.EMPTY;
+        outboxIds.clear();
+        if (!outbox.isEmpty()) {
+            outboxIds.addElements(0, tag.getLongArray(OUTBOX_IDS_TAG));
+        }
+        readHandoffs(tag);
+        pendingStoreLoad = tag.getBoolean(BELT_STORE_TAG);
+        storedExternally = pendingStoreLoad || tag.getBoolean(BELT_STORE_ENTRY_TAG);
+        storeGeneration = tag.contains(BELT_STORE_GENERATION_TAG, Tag.TAG_INT)
+                ? tag.getInt(BELT_STORE_GENERATION_TAG)
+                : BeltContentStore.ANY_GENERATION;
 
-        stepAccumulator = tag.contains(STEP_ACCUMULATOR_TAG, Tag.TAG_DOUBLE)
-                ? clamp(tag.getDouble(STEP_ACCUMULATOR_TAG), 0.0D, 512.0D)
-                : 0.0D;
         travelTicksPerBlock = tag.contains(TRAVEL_TICKS_PER_BLOCK_TAG, Tag.TAG_INT)
                 ? Math.max(1, tag.getInt(TRAVEL_TICKS_PER_BLOCK_TAG))
                 : resolveTravelTicksPerBlock(getBlockState());
+        setStepAccumulator(tag.contains(STEP_ACCUMULATOR_TAG, Tag.TAG_DOUBLE)
+                ? clamp(tag.getDouble(STEP_ACCUMULATOR_TAG), 0.0D, MAX_STEP_BUDGET)
+                : 0.0D);
         syncRevision = Math.max(0L, incomingRevision);
         lastAccumulatorTick = Long.MIN_VALUE;
         lastSyncPacketGameTime = Long.MIN_VALUE;
         needsSync = false;
         nextEndMarkerValidationTick = Long.MIN_VALUE;
 
-        normalizeInventory(false);
-        recalculateLengthAndResize(false);
-        normalizeInventory(false);
+        // A matching saved geometry key means the stored length is current, so the arc-length pass is skipped.
+        lengthStartFacing = getFacing(getBlockState());
+        if (tag.getInt(GEOMETRY_TAG) != geometryKey() || bufferSlots != beltLengthBlocks * SLOTS_PER_BLOCK) {
+            recalculateLengthAndResize(false);
+            normalized = false;
+        }
+        hasUnassignedItemIds = !normalized && hasItemWithoutId();
 
         suppressDirtyCallbacks = false;
 
-        advanceNextItemIdFromLoadedItems();
+        if (pendingStoreLoad && level instanceof ServerLevel serverLevel) {
+            loadFromStore(serverLevel);
+        }
+        reserveLoadedItemIds();
+        dropLegacyOverflow();
 
         if (isClient) {
-            sanitizeClientLoadedState();
-            lastClientAppliedRevision = syncRevision;
-            clientSnapshotGameTime = level != null ? level.getGameTime() : Long.MIN_VALUE;
+            ClientState client = client();
+            client.lastClientAppliedRevision = syncRevision;
+            client.clientSnapshotGameTime = level != null ? level.getGameTime() : Long.MIN_VALUE;
         }
-
-        rebuildCapabilities();
     }
 
     @Nullable
@@ -273,7 +464,10 @@ public class ConveyorBlockEntity extends BlockEntity {
 
     @Override
     public CompoundTag getUpdateTag() {
-        return saveWithoutMetadata();
+        CompoundTag tag = new CompoundTag();
+        writeBeltState(tag);
+        writeContents(tag);
+        return tag;
     }
 
     @Override
@@ -306,33 +500,64 @@ public class ConveyorBlockEntity extends BlockEntity {
 
     @Override
     public <T> LazyOptional<T> getCapability(Capability<T> cap, @Nullable Direction side) {
-        if (cap == ForgeCapabilities.ITEM_HANDLER) {
+        if (cap == ForgeCapabilities.ITEM_HANDLER && capabilitiesValid) {
+            // Handlers are created on first request and live until invalidateCaps(); they read the current
+            // queue on every call, so loads, sync packets and resizes never have to replace them.
             if (side == null) {
+                if (!unsidedCapability.isPresent()) {
+                    unsidedCapability = LazyOptional.of(() -> new SplineInventoryHandler(null));
+                }
                 return unsidedCapability.cast();
             }
-            LazyOptional<IItemHandler> sided = sidedCapabilities.get(side);
-            if (sided != null) {
-                return sided.cast();
+            if (sidedCapabilities == null) {
+                sidedCapabilities = new EnumMap<>(Direction.class);
             }
-            return unsidedCapability.cast();
+            return sidedCapabilities.computeIfAbsent(side,
+                    direction -> LazyOptional.of(() -> new SplineInventoryHandler(direction))).cast();
         }
         return super.getCapability(cap, side);
     }
 
     public void dropContents(Level level, BlockPos pos) {
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            ItemStack stack = inventory.getStackInSlot(slot);
-            if (!stack.isEmpty()) {
-                Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), stack);
-                inventory.setStackInSlot(slot, ItemStack.EMPTY);
-                renderPositions[slot] = -1;
-                itemIds[slot] = 0L;
-            }
+        int[] keys = new int[queue.size()];
+        int count = queue.copyItems(keys, null, null);
+        for (int index = 0; index < count; index++) {
+            Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), palette.get(keys[index]).copy());
+        }
+        queue.clear();
+        palette.clear();
+        if (!inbox.isEmpty()) {
+            Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), inbox);
+            inbox = ItemStack.EMPTY;
+        }
+        for (ItemStack stack : handoffs) {
+            Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), stack);
+        }
+        handoffs.clear();
+        handoffIds.clear();
+        if (!outbox.isEmpty()) {
+            Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), outbox);
+            outbox = ItemStack.EMPTY;
+            outboxIds.clear();
+        }
+
+        if (storedExternally && level instanceof ServerLevel serverLevel) {
+            BeltContentStore.get(serverLevel).remove(pos);
+            storedExternally = false;
         }
     }
 
-    public static void serverTick(Level level, BlockPos pos, BlockState state, ConveyorBlockEntity conveyor) {
-        conveyor.tickServer(level, pos, state);
+    @Override
+    public long tickScheduled(long gameTime) {
+        if (level != null) {
+            tickServer(level, worldPosition, getBlockState());
+        }
+        return getNextStepTick(gameTime);
+    }
+
+    @Override
+    public void collectDownstream(LongArrayList positions) {
+        positions.add(resolveOutputTargetPos().asLong());
     }
 
     public static void clientTick(Level level, BlockPos pos, BlockState state, ConveyorBlockEntity conveyor) {
@@ -346,23 +571,42 @@ public class ConveyorBlockEntity extends BlockEntity {
 
         validateLinkedEndMarker(level.getGameTime());
 
-        if (recalculateLengthAndResize(true)) {
-            normalizeInventory(true);
+        if (hasUnassignedItemIds) {
+            assignMissingItemIds();
+        }
+
+        Direction startFacing = getFacing(state);
+        if (startFacing != lengthStartFacing) {
+            lengthStartFacing = startFacing;
+            recalculateLengthAndResize(true);
         }
 
         updateStepAccumulator(level.getGameTime());
         int stepBudget = availableStepBudget();
-        for (int i = 0; i < stepBudget; i++) {
-            runSubStep(level);
-            consumeOneStepBudget();
+        outputBatchResolved = false;
+        outputBatchHandler = null;
+        long now = level.getGameTime();
+        outputBatchOpen = outbox.isEmpty() || (now >= outboxBackoffUntil && flushOutbox(now));
+        while (stepBudget > 0) {
+            int steps = runSteps(level, stepBudget);
+            consumeStepBudget(steps);
+            stepBudget -= steps;
+        }
+        if (!outbox.isEmpty() && now >= outboxBackoffUntil) {
+            flushOutbox(now);
         }
+        outputBatchHandler = null;
 
-        if (needsSync && setChangedAndSync(true)) {
-            needsSync = false;
+        if (refusedUpstreamItem && canTakeHandoff()) {
+            refusedUpstreamItem = false;
+            if (getInputSource() instanceof ConveyorItemHandoff upstream) {
+                upstream.onDownstreamSpaceFreed(getInputSide().getOpposite());
+            }
         }
     }
 
     private void tickClient(Level level, BlockPos pos, BlockState state) {
+        ClientState client = client();
         if (!(state.getBlock() instanceof ConveyorBlock)) {
             clearClientVisuals();
             return;
@@ -370,151 +614,196 @@ public class ConveyorBlockEntity extends BlockEntity {
 
         if (!isPlayerWithinVisualRange(level)) {
             clearClientVisuals();
-            clientSnapshotGameTime = level.getGameTime();
+            client.clientSnapshotGameTime = level.getGameTime();
             return;
         }
 
         long now = level.getGameTime();
-        if (clientSnapshotGameTime == Long.MIN_VALUE) {
-            clientSnapshotGameTime = now;
+        if (client.clientSnapshotGameTime == Long.MIN_VALUE) {
+            client.clientSnapshotGameTime = now;
+        }
+        long elapsedTicks = Math.max(0L, now - client.clientSnapshotGameTime);
+        sweepParkedClientVisuals(now);
+        int generation = ++client.clientVisualGeneration;
+        updateClientVisuals(elapsedTicks, generation);
+        removeStaleClientVisuals(generation);
+    }
+
+    private void updateClientVisuals(long elapsedTicks, int generation) {
+        ClientState client = client();
+        ensureClientScratchCapacity();
+        int[] positions = client.clientPredictedPositions;
+        int[] preview = client.clientPreviewPositions;
+        int count = queue.copyItems(client.clientQueueKeys, positions, client.clientQueueIds);
+        if (count == 0) {
+            return;
         }
-        long elapsedTicks = Math.max(0L, now - clientSnapshotGameTime);
-        ClientRenderPrediction prediction = predictClientRenderState(elapsedTicks);
 
-        Set<Long> activeVisualKeys = new HashSet<>();
-        for (ClientPredictedRenderItem item : prediction.items()) {
-            if (item.stack.isEmpty()) {
-                continue;
-            }
+        double projectedAccumulator = Math.max(0.0D, getStepAccumulator() + (elapsedTicks * getStepsPerTick()));
+        int projectedWholeSteps = (int) Math.floor(projectedAccumulator);
+        int simulatedWholeSteps = Math.min(projectedWholeSteps, getMaxClientPredictionSteps());
+        double partialProgress = projectedWholeSteps > simulatedWholeSteps
+                ? 0.0D
+                : clamp(projectedAccumulator - projectedWholeSteps, 0.0D, 1.0D);
 
-            activeVisualKeys.add(item.visualKey);
-            Vec3 visualPosition = computeVisualPositionForSlotUnits(item.slotUnits);
-            updateClientVisual(item.visualKey, item.stack, visualPosition);
+        BlockEntity outputTarget = getOutputTarget();
+        // A downstream belt's insert slot is its inbox, which keeps taking items long after the belt is
+        // full, so a handoff is predicted from its tail instead.
+        ConveyorBlockEntity outputBelt = outputTarget instanceof ConveyorBlockEntity belt ? belt : null;
+        IItemHandler predictedOutput = outputTarget == null || outputBelt != null
+                ? null
+                : getItemHandler(outputTarget, getOutputSide().getOpposite());
+        client.clientHeadCheckIndex = -1;
+        int head = 0;
+        for (int step = 0; step < simulatedWholeSteps && head < count; step++) {
+            head = simulateClientSubStep(positions, head, count, predictedOutput, outputBelt);
+        }
+
+        System.arraycopy(positions, head, preview, head, count - head);
+        int previewHead = simulateClientSubStep(preview, head, count, predictedOutput, outputBelt);
+
+        ensureVisualCurve();
+        for (int index = head; index < count; index++) {
+            int position = positions[index];
+            int nextPosition = index < previewHead ? position : preview[index];
+            double interpolated = position + ((nextPosition - position) * partialProgress) + 0.5D;
+            double slotUnits = clamp(interpolated, 0.0D, bufferSlots - 1.0E-6D);
+            long itemId = client.clientQueueIds[index];
+            long visualKey = itemId > 0L ? itemId : -(index + 1L);
+            updateClientVisual(visualKey, palette.get(client.clientQueueKeys[index]), slotUnits, generation);
         }
-
-        removeStaleClientVisuals(activeVisualKeys);
     }
 
-    private ClientRenderPrediction predictClientRenderState(long elapsedTicks) {
-        List<ClientPredictedQueueItem> queue = new ArrayList<>();
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            ItemStack stack = inventory.getStackInSlot(slot);
-            if (stack.isEmpty()) {
-                continue;
-            }
+    private int simulateClientSubStep(int[] positions, int head, int count, @Nullable IItemHandler predictedOutput,
+                                      @Nullable ConveyorBlockEntity outputBelt) {
+        if (head < count
+                && positions[head] >= bufferSlots - 1
+                && canLikelyTransferHead(predictedOutput, outputBelt, head)) {
+            head++;
+        }
+        advanceClientQueueOneStep(positions, head, count);
+        return head;
+    }
 
-            long visualKey = itemIds[slot] > 0L ? itemIds[slot] : -(slot + 1L);
-            int basePosition = clampRenderPosition(renderPositions[slot]);
-            if (basePosition < 0) {
-                basePosition = 0;
-            }
-            queue.add(new ClientPredictedQueueItem(visualKey, stack.copy(), basePosition));
+    private void advanceClientQueueOneStep(int[] positions, int head, int count) {
+        if (head >= count) {
+            return;
         }
 
-        if (queue.isEmpty()) {
-            return new ClientRenderPrediction(List.of());
+        boolean[] taken = client().clientTakenPositions;
+        Arrays.fill(taken, 0, bufferSlots, false);
+        for (int index = head; index < count; index++) {
+            int current = clamp(positions[index], 0, bufferSlots - 1);
+            int desired = Math.min(bufferSlots - 1, current + 1);
+            int next = taken[desired] ? current : desired;
+            taken[next] = true;
+            positions[index] = next;
         }
+    }
 
-        double projectedAccumulator = Math.max(0.0D, stepAccumulator + (elapsedTicks * getStepsPerTick()));
-        int projectedWholeSteps = (int) Math.floor(projectedAccumulator);
-        int simulatedWholeSteps = Math.min(projectedWholeSteps, getMaxClientPredictionSteps());
-        double partialProgress = projectedWholeSteps > simulatedWholeSteps
-                ? 0.0D
-                : clamp(projectedAccumulator - projectedWholeSteps, 0.0D, 1.0D);
+    private boolean canLikelyTransferHead(@Nullable IItemHandler predictedOutput, @Nullable ConveyorBlockEntity outputBelt,
+                                          int queueIndex) {
+        ClientState client = client();
+        if (queueIndex == client.clientHeadCheckIndex) {
+            return client.clientHeadCheckResult;
+        }
 
-        IItemHandler predictedOutput = getOutputContainerHandler();
-        for (int step = 0; step < simulatedWholeSteps; step++) {
-            simulateClientSubStep(queue, predictedOutput);
+        boolean result = false;
+        if (outputBelt != null) {
+            result = outputBelt.queue.canAcceptAtTail();
+        } else if (predictedOutput != null) {
+            ItemStack stack = palette.get(client.clientQueueKeys[queueIndex]);
+            result = !stack.isEmpty() && canInsertFully(predictedOutput, stack);
         }
 
-        List<ClientPredictedQueueItem> previewQueue = copyClientQueue(queue);
-        simulateClientSubStep(previewQueue, predictedOutput);
+        client.clientHeadCheckIndex = queueIndex;
+        client.clientHeadCheckResult = result;
+        return result;
+    }
 
-        Map<Long, Integer> nextPositionsByKey = new HashMap<>();
-        for (ClientPredictedQueueItem previewItem : previewQueue) {
-            nextPositionsByKey.put(previewItem.visualKey, previewItem.position);
+    private static boolean canInsertFully(IItemHandler handler, ItemStack stack) {
+        ItemStack remaining = stack;
+        for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
+            remaining = handler.insertItem(slot, remaining, true);
         }
+        return remaining.isEmpty();
+    }
 
-        List<ClientPredictedRenderItem> renderedItems = new ArrayList<>(queue.size());
-        for (ClientPredictedQueueItem item : queue) {
-            int nextPosition = nextPositionsByKey.getOrDefault(item.visualKey, item.position);
-            double interpolated = item.position + ((nextPosition - item.position) * partialProgress) + 0.5D;
-            double slotUnits = clamp(interpolated, 0.0D, bufferSlots - 1.0E-6D);
-            renderedItems.add(new ClientPredictedRenderItem(item.visualKey, item.stack, slotUnits));
+    private void ensureClientScratchCapacity() {
+        ClientState client = client();
+        if (client.clientQueueKeys.length != bufferSlots) {
+            client.clientQueueKeys = new int[bufferSlots];
+            client.clientQueueIds = new long[bufferSlots];
+            client.clientPredictedPositions = new int[bufferSlots];
+            client.clientPreviewPositions = new int[bufferSlots];
+            client.clientTakenPositions = new boolean[bufferSlots];
         }
-
-        return new ClientRenderPrediction(renderedItems);
     }
 
-    private void simulateClientSubStep(List<ClientPredictedQueueItem> queue, @Nullable IItemHandler predictedOutput) {
-        tryClientTransferHead(queue, predictedOutput);
-        advanceClientQueueOneStep(queue);
+    private int getMaxClientPredictionSteps() {
+        return Math.max(bufferSlots * 2, MAX_CLIENT_PREDICTION_STEPS);
     }
 
-    private void tryClientTransferHead(List<ClientPredictedQueueItem> queue, @Nullable IItemHandler predictedOutput) {
-        if (queue.isEmpty()) {
-            return;
+    // Runs up to budget steps at once, up to the next step on which a head reaches the output. The
+    // result matches single steps of transfer, advance and feed: the queue moves analytically and
+    // each new item lands where it would be had it entered on its own step.
+    private int runSteps(Level level, int budget) {
+        tryTransferToOutput(level);
+        int head = queue.headPosition();
+        int steps;
+        if (head < 0) {
+            steps = Math.min(budget, Math.max(1, bufferSlots - 1));
+        } else if (head >= bufferSlots - 1) {
+            // The head was refused, and nothing downstream changes until this tick is over.
+            steps = budget;
+        } else {
+            steps = Math.min(budget, bufferSlots - 1 - head);
         }
 
-        ClientPredictedQueueItem head = queue.get(0);
-        if (head.position < bufferSlots - 1) {
-            return;
+        if (queue.advanceBy(steps)) {
+            markDirtyForSync();
         }
-        if (!canLikelyTransferHead(predictedOutput, head.stack)) {
-            return;
+
+        int tail = queue.tailPosition();
+        int position = tail < 0 ? steps - 1 : Math.min(steps - 1, tail - 1);
+        while (position >= 0 && feedAt(position)) {
+            position--;
         }
+        return steps;
+    }
 
-        queue.remove(0);
+    private boolean feedAt(int position) {
+        return feedFromHandoffs(position) || feedFromInbox(position) || pullFromInputContainer(position);
     }
 
-    private void advanceClientQueueOneStep(List<ClientPredictedQueueItem> queue) {
-        if (queue.isEmpty()) {
-            return;
+    private boolean feedFromHandoffs(int position) {
+        if (handoffIds.isEmpty()) {
+            return false;
         }
 
-        boolean[] taken = new boolean[bufferSlots];
-        for (ClientPredictedQueueItem item : queue) {
-            int current = item.position;
-            if (current < 0) {
-                current = 0;
-            }
-            current = clamp(current, 0, bufferSlots - 1);
-
-            int desired = Math.min(bufferSlots - 1, current + 1);
-            int next = (desired >= 0 && desired < taken.length && !taken[desired]) ? desired : current;
-            if (next >= 0 && next < taken.length) {
-                taken[next] = true;
-            }
-            item.position = next;
+        ItemStack next = handoffs.get(0);
+        long itemId = handoffIds.removeLong(0);
+        queue.pushAt(palette.acquire(next), position, itemId > 0L ? itemId : allocateItemId());
+        next.shrink(1);
+        if (next.isEmpty()) {
+            handoffs.remove(0);
         }
+        markDirtyForSync();
+        return true;
     }
 
-    private boolean canLikelyTransferHead(@Nullable IItemHandler predictedOutput, ItemStack stack) {
-        if (predictedOutput == null || stack.isEmpty()) {
+    private boolean feedFromInbox(int position) {
+        if (inbox.isEmpty()) {
             return false;
         }
 
-        ItemStack single = stack.copy();
-        single.setCount(1);
-        return insertIntoHandler(predictedOutput, single, true).isEmpty();
-    }
-
-    private static List<ClientPredictedQueueItem> copyClientQueue(List<ClientPredictedQueueItem> source) {
-        List<ClientPredictedQueueItem> copy = new ArrayList<>(source.size());
-        for (ClientPredictedQueueItem item : source) {
-            copy.add(new ClientPredictedQueueItem(item.visualKey, item.stack, item.position));
+        queue.pushAt(palette.acquire(inbox), position, allocateItemId());
+        inbox.shrink(1);
+        if (inbox.isEmpty()) {
+            inbox = ItemStack.EMPTY;
         }
-        return copy;
-    }
-
-    private int getMaxClientPredictionSteps() {
-        return Math.max(bufferSlots * 2, MAX_CLIENT_PREDICTION_STEPS);
-    }
-
-    private void runSubStep(Level level) {
-        tryTransferToOutput(level);
-        advanceItemsOneStep();
-        pullFromInputContainer();
+        markDirtyForSync();
+        return true;
     }
 
     private boolean tryTransferToOutput(Level level) {
@@ -522,101 +811,248 @@ public class ConveyorBlockEntity extends BlockEntity {
             return false;
         }
 
-        IItemHandler outputHandler = getOutputContainerHandler();
+        BlockEntity target = getOutputTarget();
+        if (target == null) {
+            return false;
+        }
+
+        // Outbox items left the belt first, so nothing overtakes them, whatever the target is now.
+        if (!outputBatchOpen) {
+            return false;
+        }
+
+        if (target instanceof ConveyorItemHandoff handoff) {
+            return tryHandoffToOutput(level, handoff);
+        }
+
+        IItemHandler outputHandler = resolveOutputBatchHandler(target);
         if (outputHandler == null) {
             return false;
         }
 
-        ItemStack moving = peekHeadSingle();
+        ItemStack moving = peekHead();
         if (moving.isEmpty()) {
             return false;
         }
 
-        if (!insertIntoHandler(outputHandler, moving, true).isEmpty()) {
+        if (outbox.isEmpty()) {
+            // One simulated insert per batch; later heads of the same item just join the outbox.
+            if (!insertIntoHandler(outputHandler, moving, true).isEmpty()) {
+                return false;
+            }
+        } else if (!ItemStack.isSameItemSameTags(outbox, moving) || outbox.getCount() >= outbox.getMaxStackSize()) {
             return false;
         }
 
-        HeadTransfer transfer = popHeadForTransfer();
-        if (transfer == null || transfer.stack.isEmpty()) {
+        if (outbox.isEmpty()) {
+            outbox = moving.copy();
+        } else {
+            outbox.grow(1);
+        }
+        outboxIds.add(queue.headId());
+        removeHead();
+        return true;
+    }
+
+    @Nullable
+    private IItemHandler resolveOutputBatchHandler(BlockEntity target) {
+        if (!outputBatchResolved) {
+            outputBatchResolved = true;
+            outputBatchHandler = getItemHandler(target, getOutputSide().getOpposite());
+        }
+        return outputBatchHandler;
+    }
+
+    // Whatever the target refuses stays in the outbox and holds the belt back; retries back off until the
+    // target changes.
+    private boolean flushOutbox(long now) {
+        int before = outbox.getCount();
+        BlockEntity target = getOutputTarget();
+        if (target instanceof ConveyorItemHandoff handoff) {
+            Direction receivingSide = getOutputSide().getOpposite();
+            int accepted = 0;
+            while (!outbox.isEmpty() && handoff.acceptItem(receivingSide, outbox, outboxId(accepted), false)) {
+                outbox.shrink(1);
+                accepted++;
+            }
+        } else if (target != null) {
+            IItemHandler handler = getItemHandler(target, getOutputSide().getOpposite());
+            if (handler != null) {
+                outbox = insertIntoHandler(handler, outbox, false);
+            }
+        }
+
+        int taken = before - outbox.getCount();
+        // Plain handlers keep no ids, so the ids of whatever they took end here.
+        outboxIds.removeElements(0, Math.min(taken, outboxIds.size()));
+        if (outbox.isEmpty()) {
+            outbox = ItemStack.EMPTY;
+            outboxIds.clear();
+            outboxBackoffTicks = 0;
+            outboxBackoffUntil = Long.MIN_VALUE;
+        } else {
+            outboxBackoffTicks = Math.min(OUTBOX_BLOCKED_BACKOFF_MAX_TICKS, Math.max(1, outboxBackoffTicks * 2));
+            outboxBackoffUntil = now + outboxBackoffTicks;
+        }
+        if (taken != 0) {
+            markDirtyForSync();
+        }
+        return outbox.isEmpty();
+    }
+
+    private long outboxId(int index) {
+        return index < outboxIds.size() ? outboxIds.getLong(index) : 0L;
+    }
+
+    private void wakeOutbox() {
+        if (outbox.isEmpty() || outboxBackoffUntil == Long.MIN_VALUE) {
+            return;
+        }
+
+        outboxBackoffTicks = 0;
+        outboxBackoffUntil = Long.MIN_VALUE;
+        LogisticsTickScheduler.wake(this);
+    }
+
+    private boolean tryHandoffToOutput(Level level, ConveyorItemHandoff handoff) {
+        Direction receivingSide = getOutputSide().getOpposite();
+        ItemStack head = palette.get(queue.headKey());
+        long itemId = queue.headId();
+        if (head.isEmpty() || !handoff.acceptItem(receivingSide, head, itemId, true)) {
             return false;
         }
 
-        ItemStack remaining = insertIntoHandler(outputHandler, transfer.stack, false);
-        if (!remaining.isEmpty()) {
-            BlockPos outputPos = resolveOutputTargetPos();
-            Containers.dropItemStack(level,
-                    outputPos.getX() + 0.5D,
-                    outputPos.getY() + 0.5D,
-                    outputPos.getZ() + 0.5D,
-                    remaining);
+        // The shared palette stack is handed over as is; receivers copy only what they keep.
+        boolean accepted = handoff.acceptItem(receivingSide, head, itemId, false);
+        removeHead();
+        if (!accepted) {
+            dropAtOutput(level, head.copy());
         }
 
         return true;
     }
 
-    private boolean pullFromInputContainer() {
-        if (level == null || !canAcceptNewItemAtStep()) {
+    private void dropAtOutput(Level level, ItemStack stack) {
+        BlockPos outputPos = resolveOutputTargetPos();
+        Containers.dropItemStack(level,
+                outputPos.getX() + 0.5D,
+                outputPos.getY() + 0.5D,
+                outputPos.getZ() + 0.5D,
+                stack);
+    }
+
+    private boolean pullFromInputContainer(int position) {
+        if (level == null) {
+            return false;
+        }
+
+        long now = level.getGameTime();
+        if (now < inputEmptyBackoffUntil) {
             return false;
         }
 
-        IItemHandler handler = getInputContainerHandler();
+        BlockEntity source = getInputSource();
+        if (source == null) {
+            return false;
+        }
+
+        Direction sideOnSource = getInputSide().getOpposite();
+        IItemHandler handler = getItemHandler(source, sideOnSource);
         if (handler == null) {
             return false;
         }
 
-        for (int slot = 0; slot < handler.getSlots(); slot++) {
-            ItemStack simulated = handler.extractItem(slot, 1, true);
-            if (simulated.isEmpty()) {
-                continue;
-            }
+        if (handler != inputScanHandler) {
+            inputScanHandler = handler;
+            inputScanCursor = 0;
+            inputLastHitSlot = -1;
+            inputEmptyBackoffTicks = 0;
+        }
 
-            ItemStack single = simulated.copy();
-            single.setCount(1);
-            if (!enqueueItem(single, true)) {
-                return false;
-            }
+        int slots = handler.getSlots();
+        if (slots <= 0) {
+            return false;
+        }
 
-            ItemStack extracted = handler.extractItem(slot, 1, false);
-            if (extracted.isEmpty()) {
-                continue;
+        if (inputLastHitSlot >= 0 && inputLastHitSlot < slots && now - inputLastHitTick <= INPUT_HIT_MEMORY_TICKS) {
+            int result = tryPullFromSlot(handler, inputLastHitSlot, source, sideOnSource, now, position);
+            if (result != PULL_EMPTY) {
+                return result == PULL_TAKEN;
             }
+        }
 
-            ItemStack extractedSingle = extracted.copy();
-            extractedSingle.setCount(1);
-            return enqueueItem(extractedSingle, false);
+        int start = Math.floorMod(inputScanCursor, slots);
+        for (int offset = 0; offset < slots; offset++) {
+            int slot = (start + offset) % slots;
+            int result = tryPullFromSlot(handler, slot, source, sideOnSource, now, position);
+            if (result != PULL_EMPTY) {
+                return result == PULL_TAKEN;
+            }
         }
 
+        // Nothing to take anywhere; wait longer each time until the source reports a change.
+        inputEmptyBackoffTicks = Math.min(INPUT_EMPTY_BACKOFF_MAX_TICKS, Math.max(1, inputEmptyBackoffTicks * 2));
+        inputEmptyBackoffUntil = now + inputEmptyBackoffTicks;
         return false;
     }
 
-    @Nullable
-    private IItemHandler getInputContainerHandler() {
-        if (level == null) {
-            return null;
+    private int tryPullFromSlot(IItemHandler handler, int slot, BlockEntity source, Direction sideOnSource, long now, int position) {
+        // The caller found a free position, so the extract is not simulated first.
+        long carriedItemId = source instanceof ConveyorItemHandoff handoff ? handoff.peekItemId(sideOnSource) : 0L;
+        ItemStack extracted = handler.extractItem(slot, 1, false);
+        if (extracted.isEmpty()) {
+            return PULL_EMPTY;
         }
 
-        BlockEntity blockEntity = level.getBlockEntity(resolveInputTargetPos());
-        if (blockEntity == null || blockEntity == this) {
-            return null;
+        inputScanCursor = slot;
+        inputLastHitSlot = slot;
+        inputLastHitTick = now;
+        inputEmptyBackoffTicks = 0;
+        queue.pushAt(palette.acquire(extracted), position, carriedItemId > 0L ? carriedItemId : allocateItemId());
+        markDirtyForSync();
+        return PULL_TAKEN;
+    }
+
+    @Override
+    public void onDownstreamSpaceFreed(Direction side) {
+        if (side == getOutputSide()) {
+            wakeOutbox();
+        }
+    }
+
+    public void onNeighborContentsChanged(BlockPos neighborPos) {
+        if (neighborPos.equals(resolveOutputTargetPos())) {
+            wakeOutbox();
+        }
+        if (!neighborPos.equals(resolveInputTargetPos())) {
+            return;
         }
 
-        Direction inputSide = getInputSide();
-        return getItemHandler(blockEntity, inputSide.getOpposite());
+        inputEmptyBackoffUntil = Long.MIN_VALUE;
+        inputEmptyBackoffTicks = 0;
+        if (inputLastHitSlot >= 0) {
+            inputScanCursor = inputLastHitSlot;
+        }
     }
 
     @Nullable
-    private IItemHandler getOutputContainerHandler() {
+    private BlockEntity getInputSource() {
         if (level == null) {
             return null;
         }
 
-        BlockEntity blockEntity = level.getBlockEntity(resolveOutputTargetPos());
-        if (blockEntity == null || blockEntity == this) {
+        BlockEntity blockEntity = level.getBlockEntity(resolveInputTargetPos());
+        return blockEntity == this ? null : blockEntity;
+    }
+
+    @Nullable
+    private BlockEntity getOutputTarget() {
+        if (level == null) {
             return null;
         }
 
-        Direction outputSide = getOutputSide();
-        return getItemHandler(blockEntity, outputSide.getOpposite());
+        BlockEntity blockEntity = level.getBlockEntity(resolveOutputTargetPos());
+        return blockEntity == this ? null : blockEntity;
     }
 
     @Nullable
@@ -631,386 +1067,211 @@ public class ConveyorBlockEntity extends BlockEntity {
     }
 
     private static ItemStack insertIntoHandler(IItemHandler handler, ItemStack stack, boolean simulate) {
-        ItemStack remaining = stack.copy();
+        ItemStack remaining = stack;
         for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
             remaining = handler.insertItem(slot, remaining, simulate);
         }
         return remaining;
     }
 
-    private boolean enqueueItem(ItemStack stack, boolean simulate) {
-        if (stack.isEmpty()) {
-            return true;
-        }
-
-        if (!canAcceptNewItemAtStep()) {
+    @Override
+    public boolean acceptItem(Direction side, ItemStack stack, long itemId, boolean simulate) {
+        if (stack.isEmpty() || !canInsertFromSide(side)) {
             return false;
         }
 
-        int slot = findFirstEmptySlot();
-        if (slot < 0) {
+        // Staged inbox items were accepted first, so a handoff waits until they are on the belt.
+        if (!canTakeHandoff()) {
+            refusedUpstreamItem = true;
             return false;
         }
 
-        if (!simulate) {
-            ItemStack single = stack.copy();
-            single.setCount(1);
-            suppressDirtyCallbacks = true;
-            inventory.setStackInSlot(slot, single);
-            suppressDirtyCallbacks = false;
-            renderPositions[slot] = 0;
-            itemIds[slot] = allocateItemId();
-            markDirtyForSync();
+        if (!simulate && (!handoffIds.isEmpty() || !enqueueItem(stack, itemId, false))) {
+            stageHandoff(stack, itemId);
         }
-
         return true;
     }
 
-    private ItemStack insertFromCapability(@Nullable Direction side, int slot, ItemStack stack, boolean simulate) {
-        if (stack.isEmpty()) {
-            return ItemStack.EMPTY;
-        }
-
-        if (side != null && !canInsertFromSide(side)) {
-            return stack;
-        }
-
-        int tailSlot = findFirstEmptySlot();
-        if (tailSlot < 0 || slot != tailSlot || !canAcceptNewItemAtStep()) {
-            return stack;
-        }
-
-        ItemStack single = stack.copy();
-        single.setCount(1);
-        if (!simulate) {
-            suppressDirtyCallbacks = true;
-            inventory.setStackInSlot(slot, single);
-            suppressDirtyCallbacks = false;
-            renderPositions[slot] = 0;
-            itemIds[slot] = allocateItemId();
-            markDirtyForSync();
-        }
-
-        ItemStack leftover = stack.copy();
-        leftover.shrink(1);
-        return leftover;
+    // Room for everything the upstream can hand over between two visits of this belt, so coarse
+    // stepping in a chain keeps the full rate instead of one item per visit.
+    private boolean canTakeHandoff() {
+        return inbox.isEmpty() && handoffIds.size() < getHandoffCapacity();
     }
 
-    private ItemStack extractFromCapability(@Nullable Direction side, int slot, int amount, boolean simulate) {
-        if (amount <= 0) {
-            return ItemStack.EMPTY;
-        }
-
-        if (side != null && !canExtractFromSide(side)) {
-            return ItemStack.EMPTY;
-        }
-
-        if (slot != 0 || !hasHeadAtOutput()) {
-            return ItemStack.EMPTY;
-        }
-
-        ItemStack head = inventory.getStackInSlot(0);
-        if (head.isEmpty()) {
-            return ItemStack.EMPTY;
-        }
-
-        ItemStack single = head.copy();
-        single.setCount(1);
-
-        if (!simulate) {
-            popHeadForTransfer();
-        }
-
-        return single;
+    private int getHandoffCapacity() {
+        return (int) Math.ceil(getStepsPerTick() * LogisticsTickScheduler.getStepInterval(level)) + 1;
     }
 
-    private int findFirstEmptySlot() {
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            if (inventory.getStackInSlot(slot).isEmpty()) {
-                return slot;
-            }
+    private void stageHandoff(ItemStack stack, long itemId) {
+        ItemStack last = handoffs.isEmpty() ? ItemStack.EMPTY : handoffs.get(handoffs.size() - 1);
+        if (!last.isEmpty() && last.getCount() < last.getMaxStackSize() && ItemStack.isSameItemSameTags(last, stack)) {
+            last.grow(1);
+        } else {
+            handoffs.add(stack.copyWithCount(1));
         }
-        return -1;
+        handoffIds.add(itemId > 0L ? itemId : allocateItemId());
+        markDirtyForSync();
     }
 
-    private boolean compactQueue() {
-        boolean changed = false;
-        int write = 0;
-
-        suppressDirtyCallbacks = true;
-        for (int read = 0; read < bufferSlots; read++) {
-            ItemStack stack = inventory.getStackInSlot(read);
-            if (stack.isEmpty()) {
-                continue;
-            }
-
-            if (write != read) {
-                inventory.setStackInSlot(write, stack);
-                inventory.setStackInSlot(read, ItemStack.EMPTY);
-                renderPositions[write] = renderPositions[read];
-                renderPositions[read] = -1;
-                itemIds[write] = itemIds[read];
-                itemIds[read] = 0L;
-                changed = true;
+    private void readHandoffs(CompoundTag tag) {
+        handoffs.clear();
+        handoffIds.clear();
+        long[] ids = tag.getLongArray(HANDOFF_IDS_TAG);
+        ListTag staged = tag.getList(HANDOFFS_TAG, Tag.TAG_COMPOUND);
+        for (int index = 0; index < staged.size(); index++) {
+            ItemStack stack = ItemStack.of(staged.getCompound(index));
+            if (!stack.isEmpty()) {
+                handoffs.add(stack);
             }
-
-            write++;
         }
-
-        for (int slot = write; slot < bufferSlots; slot++) {
-            if (!inventory.getStackInSlot(slot).isEmpty()) {
-                inventory.setStackInSlot(slot, ItemStack.EMPTY);
-                changed = true;
-            }
-            if (renderPositions[slot] != -1) {
-                renderPositions[slot] = -1;
-                changed = true;
-            }
-            if (itemIds[slot] != 0L) {
-                itemIds[slot] = 0L;
-                changed = true;
+        for (ItemStack stack : handoffs) {
+            for (int i = 0; i < stack.getCount(); i++) {
+                int index = handoffIds.size();
+                handoffIds.add(index < ids.length ? ids[index] : 0L);
             }
         }
-        suppressDirtyCallbacks = false;
-
-        return changed;
     }
 
-    private boolean normalizeInventory(boolean markDirty) {
-        boolean changed = compactQueue();
-
-        suppressDirtyCallbacks = true;
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            ItemStack stack = inventory.getStackInSlot(slot);
-            if (stack.isEmpty()) {
-                if (renderPositions[slot] != -1) {
-                    renderPositions[slot] = -1;
-                    changed = true;
-                }
-                if (itemIds[slot] != 0L) {
-                    itemIds[slot] = 0L;
-                    changed = true;
-                }
-                continue;
-            }
-
-            if (itemIds[slot] == 0L) {
-                itemIds[slot] = allocateItemId();
-                changed = true;
-            }
-
-            if (stack.getCount() <= 1) {
-                continue;
-            }
-
-            int overflow = stack.getCount() - 1;
-            ItemStack single = stack.copy();
-            single.setCount(1);
-            inventory.setStackInSlot(slot, single);
-            changed = true;
-
-            while (overflow > 0) {
-                int emptySlot = findFirstEmptySlot();
-                if (emptySlot < 0) {
-                    break;
-                }
-
-                inventory.setStackInSlot(emptySlot, single.copy());
-                renderPositions[emptySlot] = 0;
-                itemIds[emptySlot] = allocateItemId();
-                overflow--;
-                changed = true;
-            }
+    @Override
+    public long peekItemId(Direction side) {
+        if (!canExtractFromSide(side) || !hasHeadAtOutput()) {
+            return 0L;
         }
-        suppressDirtyCallbacks = false;
+        return queue.headId();
+    }
 
-        if (compactQueue()) {
-            changed = true;
+    private boolean enqueueItem(ItemStack stack, long itemId, boolean simulate) {
+        if (stack.isEmpty()) {
+            return true;
         }
 
-        if (normalizeRenderPositions(countNonEmptySlots())) {
-            changed = true;
+        if (!canAcceptNewItemAtStep()) {
+            return false;
         }
 
-        if (changed && markDirty) {
+        if (!simulate) {
+            queue.pushTail(palette.acquire(stack), itemId > 0L ? itemId : allocateItemId());
             markDirtyForSync();
         }
 
-        return changed;
-    }
-
-    private void sanitizeClientLoadedState() {
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            ItemStack stack = inventory.getStackInSlot(slot);
-            if (stack.isEmpty()) {
-                renderPositions[slot] = -1;
-                itemIds[slot] = 0L;
-                continue;
-            }
-
-            int position = clampRenderPosition(renderPositions[slot]);
-            renderPositions[slot] = position < 0 ? 0 : position;
-        }
-    }
-
-    private int countNonEmptySlots() {
-        int count = 0;
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            if (!inventory.getStackInSlot(slot).isEmpty()) {
-                count++;
-            }
-        }
-        return count;
+        return true;
     }
 
-    private boolean hasHeadAtOutput() {
-        if (inventory.getStackInSlot(0).isEmpty()) {
-            return false;
-        }
-
-        return clampRenderPosition(renderPositions[0]) >= bufferSlots - 1;
+    // Bulk insert for callers that hold a conveyor directly; items taken this way get fresh ids.
+    public ItemStack insertStack(Direction side, ItemStack stack, boolean simulate) {
+        return insertFromCapability(side, stack, simulate);
     }
 
-    private ItemStack peekHeadSingle() {
-        if (!hasHeadAtOutput()) {
+    private ItemStack insertFromCapability(@Nullable Direction side, ItemStack stack, boolean simulate) {
+        if (stack.isEmpty()) {
             return ItemStack.EMPTY;
         }
 
-        ItemStack head = inventory.getStackInSlot(0);
-        if (head.isEmpty()) {
-            return ItemStack.EMPTY;
+        if (side != null && !canInsertFromSide(side)) {
+            return stack;
         }
 
-        ItemStack single = head.copy();
-        single.setCount(1);
-        return single;
+        return insertBulk(stack, simulate);
     }
 
-    @Nullable
-    private HeadTransfer popHeadForTransfer() {
-        if (!hasHeadAtOutput()) {
-            return null;
+    // Takes one item straight onto a free tail and stages as many more as the inbox can hold.
+    private ItemStack insertBulk(ItemStack stack, boolean simulate) {
+        if (refusedUpstreamItem || !handoffIds.isEmpty()) {
+            // Handoffs are next in line; staging more now would keep them out indefinitely.
+            return stack;
         }
 
-        ItemStack head = inventory.getStackInSlot(0);
-        long itemId = itemIds[0];
-        if (head.isEmpty() || itemId <= 0L) {
-            return null;
+        boolean direct = inbox.isEmpty() && canAcceptNewItemAtStep();
+        int accepted = direct ? 1 : 0;
+        if (inbox.isEmpty() || ItemStack.isSameItemSameTags(inbox, stack)) {
+            int room = Math.min(INBOX_CAPACITY, stack.getMaxStackSize()) - inbox.getCount();
+            accepted += Math.max(0, Math.min(room, stack.getCount() - accepted));
         }
 
-        ItemStack single = head.copy();
-        single.setCount(1);
-
-        suppressDirtyCallbacks = true;
-        inventory.setStackInSlot(0, ItemStack.EMPTY);
-        suppressDirtyCallbacks = false;
-        renderPositions[0] = -1;
-        itemIds[0] = 0L;
-        compactQueue();
-        markDirtyForSync();
-
-        return new HeadTransfer(single, itemId);
-    }
-
-    private boolean canAcceptNewItemAtStep() {
-        return findFirstEmptySlot() >= 0 && !hasItemAtPosition(0);
-    }
-
-    private boolean hasItemAtPosition(int position) {
-        int clampedPosition = clampRenderPosition(position);
-        if (clampedPosition < 0) {
-            return false;
+        if (accepted == 0) {
+            return stack;
         }
 
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            if (!inventory.getStackInSlot(slot).isEmpty() && renderPositions[slot] == clampedPosition) {
-                return true;
+        if (!simulate) {
+            int staged = accepted;
+            if (direct) {
+                queue.pushTail(palette.acquire(stack), allocateItemId());
+                staged--;
+            }
+            if (staged > 0) {
+                if (inbox.isEmpty()) {
+                    inbox = stack.copyWithCount(staged);
+                } else {
+                    inbox.grow(staged);
+                }
             }
+            markDirtyForSync();
         }
 
-        return false;
+        // A fully taken stack needs no remainder copy; partial ones must not touch the caller's stack.
+        return accepted == stack.getCount() ? ItemStack.EMPTY : stack.copyWithCount(stack.getCount() - accepted);
     }
 
-    private boolean advanceItemsOneStep() {
-        boolean changed = false;
-        int[] nextPositions = new int[bufferSlots];
-        Arrays.fill(nextPositions, -1);
-
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            if (inventory.getStackInSlot(slot).isEmpty()) {
-                continue;
-            }
-
-            int current = clampRenderPosition(renderPositions[slot]);
-            if (current < 0) {
-                current = 0;
-            }
-
-            int desired = Math.min(bufferSlots - 1, current + 1);
-            int next = isPositionTaken(nextPositions, desired) ? current : desired;
-            nextPositions[slot] = next;
+    private ItemStack extractFromCapability(@Nullable Direction side, int amount, boolean simulate) {
+        if (amount <= 0) {
+            return ItemStack.EMPTY;
+        }
 
-            if (next != renderPositions[slot]) {
-                changed = true;
-            }
+        if (side != null && !canExtractFromSide(side)) {
+            return ItemStack.EMPTY;
         }
 
-        if (!changed) {
-            return false;
+        if (!hasHeadAtOutput()) {
+            return ItemStack.EMPTY;
         }
 
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            renderPositions[slot] = inventory.getStackInSlot(slot).isEmpty() ? -1 : nextPositions[slot];
+        ItemStack head = palette.get(queue.headKey());
+        if (head.isEmpty()) {
+            return ItemStack.EMPTY;
         }
 
-        markDirtyForSync();
-        return true;
-    }
+        ItemStack single = head.copy();
 
-    private static boolean isPositionTaken(int[] positions, int target) {
-        for (int position : positions) {
-            if (position == target) {
-                return true;
-            }
+        if (!simulate) {
+            removeHead();
         }
-        return false;
-    }
 
-    private boolean normalizeRenderPositions(int nonEmptyCount) {
-        boolean changed = false;
-        int previousMaximum = bufferSlots - 1;
-        int seen = 0;
+        return single;
+    }
 
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            if (inventory.getStackInSlot(slot).isEmpty()) {
-                if (renderPositions[slot] != -1) {
-                    renderPositions[slot] = -1;
-                    changed = true;
-                }
-                continue;
-            }
+    private boolean hasHeadAtOutput() {
+        return queue.headPosition() >= bufferSlots - 1;
+    }
 
-            int remaining = Math.max(0, nonEmptyCount - seen - 1);
-            int lower = Math.min(bufferSlots - 1, remaining);
-            int upper = Math.max(lower, previousMaximum);
-            int clamped = clamp(renderPositions[slot], lower, upper);
-            if (renderPositions[slot] != clamped) {
-                renderPositions[slot] = clamped;
-                changed = true;
-            }
-            previousMaximum = Math.max(0, clamped - 1);
-            seen++;
+    private ItemStack peekHead() {
+        if (!hasHeadAtOutput()) {
+            return ItemStack.EMPTY;
         }
 
-        return changed;
+        return palette.get(queue.headKey());
+    }
+
+    private void removeHead() {
+        int key = queue.headKey();
+        queue.popHead();
+        palette.release(key);
+        markDirtyForSync();
     }
 
-    private int clampRenderPosition(int position) {
-        if (position < 0) {
-            return -1;
+    // Swaps in an empty queue of the current size, returning the old queue's storage to its pool.
+    private void resetQueue() {
+        if (queue == null) {
+            queue = new BeltItemQueue(bufferSlots, BeltStoragePool.detached());
+            return;
         }
 
-        return Math.min(bufferSlots - 1, position);
+        BeltStoragePool pool = queue.pool();
+        queue.free();
+        queue = new BeltItemQueue(bufferSlots, pool);
+    }
+
+    private boolean canAcceptNewItemAtStep() {
+        return queue.canAcceptAtTail();
     }
 
     private boolean recalculateLengthAndResize(boolean dropOverflow) {
@@ -1032,6 +1293,15 @@ public class ConveyorBlockEntity extends BlockEntity {
         return changed;
     }
 
+    private int geometryKey() {
+        int key = GEOMETRY_VERSION;
+        key = (key * 31) + getFacing(getBlockState()).get3DDataValue();
+        key = (key * 31) + endFacing.get3DDataValue();
+        key = (key * 31) + Long.hashCode(worldPosition.asLong());
+        key = (key * 31) + (endPos == null ? 0 : Long.hashCode(endPos.asLong()));
+        return key;
+    }
+
     private int computeBeltLengthBlocks() {
         if (endPos == null) {
             return 1;
@@ -1082,54 +1352,41 @@ public class ConveyorBlockEntity extends BlockEntity {
             return;
         }
 
-        List<BufferedItem> items = new ArrayList<>();
         int oldSlots = Math.max(1, bufferSlots);
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            ItemStack stack = inventory.getStackInSlot(slot);
-            if (stack.isEmpty()) {
-                continue;
-            }
-
-            ItemStack single = stack.copy();
-            single.setCount(1);
-            int oldPosition = clamp(renderPositions[slot], 0, oldSlots - 1);
-            double progress = clamp((oldPosition + 0.5D) / oldSlots, 0.0D, 1.0D);
-            long id = itemIds[slot] > 0L ? itemIds[slot] : allocateItemId();
-            items.add(new BufferedItem(single, id, progress));
-        }
+        int count = queue.size();
+        int[] keys = new int[count];
+        int[] positions = new int[count];
+        long[] ids = new long[count];
+        queue.copyItems(keys, positions, ids);
 
-        suppressDirtyCallbacks = true;
-        inventory = createInventory(desiredSlots);
         bufferSlots = desiredSlots;
-        renderPositions = new int[bufferSlots];
-        Arrays.fill(renderPositions, -1);
-        itemIds = new long[bufferSlots];
+        resetQueue();
 
-        int write = 0;
-        for (BufferedItem item : items) {
-            if (write >= bufferSlots) {
+        int kept = Math.min(count, bufferSlots);
+        for (int index = 0; index < count; index++) {
+            if (index >= kept) {
                 if (dropOverflow && level != null && !level.isClientSide) {
                     Containers.dropItemStack(level,
                             worldPosition.getX() + 0.5D,
                             worldPosition.getY() + 0.5D,
                             worldPosition.getZ() + 0.5D,
-                            item.stack.copy());
+                            palette.get(keys[index]).copy());
                 }
+                palette.release(keys[index]);
                 continue;
             }
 
-            inventory.setStackInSlot(write, item.stack.copy());
-            itemIds[write] = item.itemId;
-            int mapped = clamp((int) Math.floor(item.progress * bufferSlots), 0, bufferSlots - 1);
-            renderPositions[write] = mapped;
-            write++;
+            double progress = clamp((positions[index] + 0.5D) / oldSlots, 0.0D, 1.0D);
+            positions[index] = clamp((int) Math.floor(progress * bufferSlots), 0, bufferSlots - 1);
         }
-        suppressDirtyCallbacks = false;
+        queue.rebuild(keys, positions, ids, kept);
 
-        normalizeInventory(true);
+        assignMissingItemIds();
+        markDirtyForSync();
     }
 
     private void updateStepAccumulator(long now) {
+        rescaleStepProgress();
         if (lastAccumulatorTick == Long.MIN_VALUE) {
             lastAccumulatorTick = now;
             return;
@@ -1141,15 +1398,44 @@ public class ConveyorBlockEntity extends BlockEntity {
             return;
         }
 
-        stepAccumulator = Math.min(512.0D, stepAccumulator + (elapsed * getStepsPerTick()));
+        stepProgress = Math.min(MAX_STEP_BUDGET * stepProgressScale, stepProgress + (elapsed * bufferSlots));
     }
 
     private int availableStepBudget() {
-        return (int) Math.floor(stepAccumulator);
+        return (int) (stepProgress / stepProgressScale);
+    }
+
+    private void consumeStepBudget(int steps) {
+        stepProgress = Math.max(0L, stepProgress - (steps * stepProgressScale));
+    }
+
+    // Belt length changes move the schedule to the new scale, keeping the fraction of a step.
+    private void rescaleStepProgress() {
+        long travelTicks = getConfiguredTravelTicks();
+        if (travelTicks != stepProgressScale) {
+            stepProgress = (stepProgress * travelTicks) / stepProgressScale;
+            stepProgressScale = travelTicks;
+        }
+    }
+
+    private double getStepAccumulator() {
+        return stepProgress / (double) stepProgressScale;
     }
 
-    private void consumeOneStepBudget() {
-        stepAccumulator = Math.max(0.0D, stepAccumulator - 1.0D);
+    private void setStepAccumulator(double steps) {
+        stepProgressScale = getConfiguredTravelTicks();
+        stepProgress = Math.round(steps * stepProgressScale);
+    }
+
+    // First tick at which at least one whole step is available again.
+    private long getNextStepTick(long now) {
+        rescaleStepProgress();
+        if (stepProgress >= stepProgressScale) {
+            return now + 1L;
+        }
+
+        long missing = stepProgressScale - stepProgress;
+        return now + Math.max(1L, (missing + bufferSlots - 1L) / bufferSlots);
     }
 
     private double getStepsPerTick() {
@@ -1161,7 +1447,8 @@ public class ConveyorBlockEntity extends BlockEntity {
     }
 
     private long getClientSyncIntervalTicks() {
-        return Math.max(1L, travelTicksPerBlock / 2L);
+        // Coarse stepping moves items in bigger jumps, so syncing between them would show nothing new.
+        return Math.max(1L, travelTicksPerBlock / 2L) * LogisticsTickScheduler.getStepInterval(level);
     }
 
     private Direction getInputSide() {
@@ -1199,7 +1486,12 @@ public class ConveyorBlockEntity extends BlockEntity {
         if (nextEndMarkerValidationTick != Long.MIN_VALUE && gameTime < nextEndMarkerValidationTick) {
             return;
         }
-        nextEndMarkerValidationTick = gameTime + 20L;
+        if (nextEndMarkerValidationTick == Long.MIN_VALUE) {
+            // Spread the first check after a load so thousands of belts do not validate on the same tick.
+            nextEndMarkerValidationTick = gameTime + 1L + Math.floorMod(worldPosition.asLong() * 31L, END_MARKER_LOAD_SPREAD_TICKS);
+            return;
+        }
+        nextEndMarkerValidationTick = gameTime + END_MARKER_VALIDATION_INTERVAL_TICKS * LogisticsTickScheduler.getStepInterval(level);
         ensureLinkedEndMarker();
     }
 
@@ -1271,8 +1563,22 @@ public class ConveyorBlockEntity extends BlockEntity {
             return;
         }
 
-        setChanged();
         needsSync = true;
+        DirtyBlockEntityTracker.markDirty(this);
+    }
+
+    @Override
+    public void flushDirty() {
+        if (!needsSync) {
+            setChanged();
+            return;
+        }
+
+        if (setChangedAndSync(true)) {
+            needsSync = false;
+        } else {
+            DirtyBlockEntityTracker.markDirty(this);
+        }
     }
 
     private boolean setChangedAndSync(boolean syncToClient) {
@@ -1302,12 +1608,10 @@ public class ConveyorBlockEntity extends BlockEntity {
     }
 
     private boolean isPlayerWithinVisualRange(Level level) {
-        Vec3 startPoint = getVisualStartPoint();
-        Vec3 endPoint = getVisualEndPoint();
         double maxDistanceSqr = getVisualRangeBlocks() * getVisualRangeBlocks();
-
-        for (Player player : level.players()) {
-            if (isEntityWithinVisualRange(player, startPoint, endPoint, maxDistanceSqr)) {
+        List<? extends Player> players = level.players();
+        for (int i = 0; i < players.size(); i++) {
+            if (isEntityWithinVisualRange(players.get(i), maxDistanceSqr)) {
                 return true;
             }
         }
@@ -1328,13 +1632,11 @@ public class ConveyorBlockEntity extends BlockEntity {
             return false;
         }
 
-        Vec3 startPoint = getVisualStartPoint();
-        Vec3 endPoint = getVisualEndPoint();
         double maxDistanceSqr = getVisualRangeBlocks() * getVisualRangeBlocks();
         boolean sent = false;
 
         for (ServerPlayer player : serverLevel.players()) {
-            if (!isEntityWithinVisualRange(player, startPoint, endPoint, maxDistanceSqr)) {
+            if (!isEntityWithinVisualRange(player, maxDistanceSqr)) {
                 continue;
             }
             player.connection.send(packet);
@@ -1344,104 +1646,197 @@ public class ConveyorBlockEntity extends BlockEntity {
         return sent;
     }
 
-    private Vec3 getVisualStartPoint() {
-        return new Vec3(
-                worldPosition.getX() + 0.5D,
-                worldPosition.getY() + 0.5D,
-                worldPosition.getZ() + 0.5D
-        );
-    }
-
-    private Vec3 getVisualEndPoint() {
-        BlockPos endPoint = endPos != null ? endPos : worldPosition.relative(getOutputSide());
-        return new Vec3(
-                endPoint.getX() + 0.5D,
-                endPoint.getY() + 0.5D,
-                endPoint.getZ() + 0.5D
-        );
-    }
-
-    private static boolean isEntityWithinVisualRange(Entity entity, Vec3 startPoint, Vec3 endPoint, double maxDistanceSqr) {
+    private boolean isEntityWithinVisualRange(@Nullable Entity entity, double maxDistanceSqr) {
         if (entity == null || !entity.isAlive()) {
             return false;
         }
-        return entity.distanceToSqr(startPoint.x, startPoint.y, startPoint.z) <= maxDistanceSqr
-                || entity.distanceToSqr(endPoint.x, endPoint.y, endPoint.z) <= maxDistanceSqr;
+
+        BlockPos endPoint = endPos != null ? endPos : worldPosition.relative(getOutputSide());
+        return entity.distanceToSqr(worldPosition.getX() + 0.5D, worldPosition.getY() + 0.5D, worldPosition.getZ() + 0.5D) <= maxDistanceSqr
+                || entity.distanceToSqr(endPoint.getX() + 0.5D, endPoint.getY() + 0.5D, endPoint.getZ() + 0.5D) <= maxDistanceSqr;
     }
 
-    private void updateClientVisual(long visualKey, ItemStack sourceStack, Vec3 position) {
+    private void updateClientVisual(long visualKey, ItemStack sourceStack, double slotUnits, int generation) {
+        ClientState client = client();
         if (level == null || !level.isClientSide) {
             return;
         }
 
-        ItemStack single = sourceStack.copy();
-        single.setCount(1);
-        SplineVisualItemEntity visual = clientVisualItems.get(visualKey);
+        sampleVisualCurveForSlotUnits(slotUnits);
+        double x = client.visualSampleX;
+        double y = client.visualSampleY;
+        double z = client.visualSampleZ;
+
+        SplineVisualItemEntity visual = client.clientVisualItems.get(visualKey);
         if (visual == null || !visual.isAlive()) {
-            SplineVisualItemEntity created = new SplineVisualItemEntity(level, position.x, position.y, position.z, single);
-            if (!spawnClientVisual(visualKey, created)) {
-                clientVisualItems.remove(visualKey);
-                return;
+            if (visual != null) {
+                client.clientVisualItems.remove(visualKey);
+                releaseClientVisual(visual);
             }
-            setVisualBobPhase(created, 0.0F);
-            visual = created;
-            clientVisualItems.put(visualKey, created);
+
+            SplineVisualItemEntity handedOff = CLIENT_VISUALS_BY_ITEM_ID.get(visualKey);
+            if (handedOff != null && handedOff.isAlive() && handedOff.level() == level) {
+                if (!claimHandedOffVisual(visualKey, handedOff)) {
+                    return;
+                }
+                visual = handedOff;
+            } else {
+                SplineVisualItemEntity created = new SplineVisualItemEntity(level, x, y, z, sourceStack);
+                if (!spawnClientVisual(visualKey, created)) {
+                    return;
+                }
+                if (visualKey > 0L) {
+                    created.itemId = visualKey;
+                    CLIENT_VISUALS_BY_ITEM_ID.put(visualKey, created);
+                }
+                visual = created;
+            }
+            visual.owner = this;
+            client.clientVisualItems.put(visualKey, visual);
         }
+        visual.visualGeneration = generation;
         setVisualBobPhase(visual, 0.0F);
 
-        if (!ItemStack.isSameItemSameTags(visual.getItem(), single)) {
+        if (!ItemStack.isSameItemSameTags(visual.getItem(), sourceStack)) {
+            ItemStack single = sourceStack.copy();
+            single.setCount(1);
             visual.setItem(single);
         }
 
         visual.setOldPosAndRot();
-        visual.moveTo(position.x, position.y, position.z, 0.0F, 0.0F);
+        visual.moveTo(x, y, z, 0.0F, 0.0F);
         visual.setDeltaMovement(Vec3.ZERO);
     }
 
-    private void removeStaleClientVisuals(Set<Long> activeVisualKeys) {
-        if (clientVisualItems.isEmpty()) {
+    private void removeStaleClientVisuals(int generation) {
+        ClientState client = client();
+        if (client.clientVisualItems.isEmpty()) {
             return;
         }
 
-        List<Long> staleKeys = new ArrayList<>();
-        for (Map.Entry<Long, SplineVisualItemEntity> entry : clientVisualItems.entrySet()) {
-            SplineVisualItemEntity visual = entry.getValue();
-            if (visual == null || !visual.isAlive() || !activeVisualKeys.contains(entry.getKey())) {
-                if (visual != null) {
-                    if (level != null && level.isClientSide) {
-                        removeClientEntityById(visual.getId());
-                    }
-                    visual.discard();
+        int feedsHandoff = -1;
+        ObjectIterator<SplineVisualItemEntity> iterator = client.clientVisualItems.values().iterator();
+        while (iterator.hasNext()) {
+            SplineVisualItemEntity visual = iterator.next();
+            if (visual != null && visual.isAlive() && visual.visualGeneration == generation) {
+                continue;
+            }
+
+            iterator.remove();
+            if (visual == null) {
+                continue;
+            }
+
+            if (visual.isAlive() && visual.itemId > 0L && level != null) {
+                if (feedsHandoff < 0) {
+                    feedsHandoff = getOutputTarget() instanceof ConveyorItemHandoff ? 1 : 0;
                 }
-                staleKeys.add(entry.getKey());
+                if (feedsHandoff == 1) {
+                    parkClientVisual(visual, level.getGameTime());
+                    continue;
+                }
+            }
+            releaseClientVisual(visual);
+        }
+    }
+
+    private boolean claimHandedOffVisual(long itemId, SplineVisualItemEntity visual) {
+        ConveyorBlockEntity previousOwner = visual.owner;
+        if (previousOwner != null && previousOwner != this) {
+            // Only the receiving belt may take a visual that is still shown upstream.
+            if (!previousOwner.resolveOutputTargetPos().equals(worldPosition)) {
+                return false;
+            }
+            if (previousOwner.clientState != null) {
+                previousOwner.clientState.clientVisualItems.remove(itemId);
             }
         }
 
-        for (Long key : staleKeys) {
-            clientVisualItems.remove(key);
+        PARKED_CLIENT_VISUALS.remove(itemId);
+        visual.parkedUntilTick = Long.MIN_VALUE;
+        return true;
+    }
+
+    private static void parkClientVisual(SplineVisualItemEntity visual, long gameTime) {
+        visual.owner = null;
+        visual.parkedUntilTick = gameTime + VISUAL_HANDOFF_TICKS;
+        PARKED_CLIENT_VISUALS.put(visual.itemId, visual);
+    }
+
+    public static void clearClientVisualHandoffs() {
+        for (SplineVisualItemEntity visual : PARKED_CLIENT_VISUALS.values()) {
+            visual.discard();
         }
+        PARKED_CLIENT_VISUALS.clear();
+        CLIENT_VISUALS_BY_ITEM_ID.clear();
+        lastParkedVisualSweepTick = Long.MIN_VALUE;
     }
 
-    private void clearClientVisuals() {
-        if (clientVisualItems.isEmpty()) {
+    private void sweepParkedClientVisuals(long gameTime) {
+        if (PARKED_CLIENT_VISUALS.isEmpty() || lastParkedVisualSweepTick == gameTime) {
             return;
         }
+        lastParkedVisualSweepTick = gameTime;
 
-        for (SplineVisualItemEntity visual : clientVisualItems.values()) {
-            if (visual == null) {
+        ObjectIterator<SplineVisualItemEntity> iterator = PARKED_CLIENT_VISUALS.values().iterator();
+        while (iterator.hasNext()) {
+            SplineVisualItemEntity visual = iterator.next();
+            boolean sameLevel = visual.level() == level;
+            if (visual.isAlive() && sameLevel && visual.parkedUntilTick > gameTime) {
                 continue;
             }
-            if (level != null && level.isClientSide) {
+
+            iterator.remove();
+            CLIENT_VISUALS_BY_ITEM_ID.remove(visual.itemId, visual);
+            if (sameLevel) {
                 removeClientEntityById(visual.getId());
             }
             visual.discard();
         }
-        clientVisualItems.clear();
     }
 
-    private Vec3 computeVisualPosition(double progress) {
+    private void releaseClientVisual(SplineVisualItemEntity visual) {
+        if (visual.itemId > 0L) {
+            CLIENT_VISUALS_BY_ITEM_ID.remove(visual.itemId, visual);
+            PARKED_CLIENT_VISUALS.remove(visual.itemId, visual);
+        }
+        visual.owner = null;
+        if (level != null && level.isClientSide) {
+            removeClientEntityById(visual.getId());
+        }
+        visual.discard();
+    }
+
+    private void clearClientVisuals() {
+        if (clientState == null || clientState.clientVisualItems.isEmpty()) {
+            return;
+        }
+
+        for (SplineVisualItemEntity visual : clientState.clientVisualItems.values()) {
+            if (visual != null) {
+                releaseClientVisual(visual);
+            }
+        }
+        clientState.clientVisualItems.clear();
+    }
+
+    private ClientState client() {
+        if (clientState == null) {
+            clientState = new ClientState();
+        }
+        return clientState;
+    }
+
+    private void ensureVisualCurve() {
+        ClientState client = client();
         Direction startFacing = getFacing(getBlockState());
         Direction outputSide = getOutputSide();
+        if (client.visualCurveValid
+                && client.visualCurveStartFacing == startFacing
+                && client.visualCurveOutputSide == outputSide
+                && Objects.equals(client.visualCurveEndPos, endPos)) {
+            return;
+        }
 
         Vec3 start = anchorToEdge(new Vec3(
                 worldPosition.getX() + 0.5D,
@@ -1475,14 +1870,41 @@ public class ConveyorBlockEntity extends BlockEntity {
         Vec3 c1 = start.add(startForward.scale(tangentLength));
         Vec3 c2 = end.subtract(endForward.scale(tangentLength));
 
-        return sampleBezier(start, c1, c2, end, clamp(progress, 0.0D, 1.0D));
-    }
-
-    private Vec3 computeVisualPositionForSlotUnits(double slotUnits) {
+        double[] curve = client.visualCurve;
+        curve[0] = start.x;
+        curve[1] = start.y;
+        curve[2] = start.z;
+        curve[3] = c1.x;
+        curve[4] = c1.y;
+        curve[5] = c1.z;
+        curve[6] = c2.x;
+        curve[7] = c2.y;
+        curve[8] = c2.z;
+        curve[9] = end.x;
+        curve[10] = end.y;
+        curve[11] = end.z;
+
+        client.visualCurveStartFacing = startFacing;
+        client.visualCurveOutputSide = outputSide;
+        client.visualCurveEndPos = endPos;
+        client.visualCurveValid = true;
+    }
+
+    private void sampleVisualCurveForSlotUnits(double slotUnits) {
+        ClientState client = client();
         double position = Math.max(0.0D, slotUnits);
         position = Math.min(bufferSlots - 1.0E-6D, position);
-        double progress = clamp(position / bufferSlots, 0.0D, 0.999999D);
-        return computeVisualPosition(progress);
+        double t = clamp(position / bufferSlots, 0.0D, 0.999999D);
+
+        double oneMinus = 1.0D - t;
+        double a = oneMinus * oneMinus * oneMinus;
+        double b = 3.0D * oneMinus * oneMinus * t;
+        double c = 3.0D * oneMinus * t * t;
+        double d = t * t * t;
+        double[] curve = client.visualCurve;
+        client.visualSampleX = (curve[0] * a) + (curve[3] * b) + (curve[6] * c) + (curve[9] * d);
+        client.visualSampleY = (curve[1] * a) + (curve[4] * b) + (curve[7] * c) + (curve[10] * d);
+        client.visualSampleZ = (curve[2] * a) + (curve[5] * b) + (curve[8] * c) + (curve[11] * d);
     }
 
     private static Vec3 sampleBezier(Vec3 p0, Vec3 p1, Vec3 p2, Vec3 p3, double t) {
@@ -1517,31 +1939,67 @@ public class ConveyorBlockEntity extends BlockEntity {
         return Math.max(min, Math.min(max, value));
     }
 
-    private static synchronized long allocateGlobalItemId() {
-        return NEXT_ITEM_ID++;
-    }
+    private long allocateItemId() {
+        if (!(level instanceof ServerLevel serverLevel)) {
+            // Chunk loads run before the level is attached and clients never mint ids;
+            // the first server tick assigns anything left at zero.
+            hasUnassignedItemIds = true;
+            return 0L;
+        }
 
-    private static synchronized void ensureGlobalItemIdAbove(long minimumExclusive) {
-        if (NEXT_ITEM_ID <= minimumExclusive) {
-            NEXT_ITEM_ID = minimumExclusive + 1L;
+        if (itemIdAllocator == null) {
+            itemIdAllocator = ConveyorItemIdAllocator.get(serverLevel);
         }
+        return itemIdAllocator.allocate();
     }
 
-    private long allocateItemId() {
-        long id = allocateGlobalItemId();
-        return Math.max(1L, id);
-    }
+    private void reserveLoadedItemIds() {
+        if (!(level instanceof ServerLevel serverLevel)) {
+            return;
+        }
 
-    private void advanceNextItemIdFromLoadedItems() {
         long maxId = 0L;
-        for (int slot = 0; slot < bufferSlots; slot++) {
-            maxId = Math.max(maxId, itemIds[slot]);
+        for (int index = 0; index < queue.size(); index++) {
+            maxId = Math.max(maxId, queue.idAt(index));
+        }
+        for (int index = 0; index < outboxIds.size(); index++) {
+            maxId = Math.max(maxId, outboxIds.getLong(index));
+        }
+        for (int index = 0; index < handoffIds.size(); index++) {
+            maxId = Math.max(maxId, handoffIds.getLong(index));
         }
         if (maxId > 0L) {
-            ensureGlobalItemIdAbove(maxId);
+            if (itemIdAllocator == null) {
+                itemIdAllocator = ConveyorItemIdAllocator.get(serverLevel);
+            }
+            itemIdAllocator.reserveAbove(maxId);
         }
     }
 
+    private void assignMissingItemIds() {
+        hasUnassignedItemIds = false;
+        for (int index = 0; index < queue.size(); index++) {
+            if (queue.idAt(index) != 0L) {
+                continue;
+            }
+
+            long id = allocateItemId();
+            if (id != 0L) {
+                queue.setIdAt(index, id);
+                markDirtyForSync();
+            }
+        }
+    }
+
+    private boolean hasItemWithoutId() {
+        for (int index = 0; index < queue.size(); index++) {
+            if (queue.idAt(index) == 0L) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean spawnClientVisual(long visualKey, SplineVisualItemEntity visual) {
         if (level == null || !level.isClientSide) {
             return false;
@@ -1569,12 +2027,12 @@ public class ConveyorBlockEntity extends BlockEntity {
         }
 
         resolveClientEntityMethods();
-        if (clientPutNonPlayerEntityMethod == null) {
+        if (ClientState.clientPutNonPlayerEntityMethod == null) {
             return false;
         }
 
         try {
-            clientPutNonPlayerEntityMethod.invoke(level, id, entity);
+            ClientState.clientPutNonPlayerEntityMethod.invoke(level, id, entity);
             return true;
         } catch (Throwable ignored) {
             return false;
@@ -1587,35 +2045,35 @@ public class ConveyorBlockEntity extends BlockEntity {
         }
 
         resolveClientEntityMethods();
-        if (clientRemoveEntityMethod == null) {
+        if (ClientState.clientRemoveEntityMethod == null) {
             return;
         }
 
         try {
-            clientRemoveEntityMethod.invoke(level, id, Entity.RemovalReason.DISCARDED);
+            ClientState.clientRemoveEntityMethod.invoke(level, id, Entity.RemovalReason.DISCARDED);
         } catch (Throwable ignored) {
             // Best effort.
         }
     }
 
     private void resolveClientEntityMethods() {
-        if (resolvedClientEntityMethods || level == null) {
+        if (ClientState.resolvedClientEntityMethods || level == null) {
             return;
         }
 
-        resolvedClientEntityMethods = true;
+        ClientState.resolvedClientEntityMethods = true;
         Class<?> levelClass = level.getClass();
 
         try {
-            clientPutNonPlayerEntityMethod = levelClass.getMethod("putNonPlayerEntity", int.class, Entity.class);
+            ClientState.clientPutNonPlayerEntityMethod = levelClass.getMethod("putNonPlayerEntity", int.class, Entity.class);
         } catch (NoSuchMethodException ignored) {
-            clientPutNonPlayerEntityMethod = null;
+            ClientState.clientPutNonPlayerEntityMethod = null;
         }
 
         try {
-            clientRemoveEntityMethod = levelClass.getMethod("removeEntity", int.class, Entity.RemovalReason.class);
+            ClientState.clientRemoveEntityMethod = levelClass.getMethod("removeEntity", int.class, Entity.RemovalReason.class);
         } catch (NoSuchMethodException ignored) {
-            clientRemoveEntityMethod = null;
+            ClientState.clientRemoveEntityMethod = null;
         }
     }
 
@@ -1641,37 +2099,215 @@ public class ConveyorBlockEntity extends BlockEntity {
         return DEFAULT_TRAVEL_TICKS_PER_BLOCK;
     }
 
-    private void rebuildCapabilities() {
-        if (unsidedCapability.isPresent()) {
-            unsidedCapability.invalidate();
+    private void writeContents(CompoundTag tag) {
+        if (!queue.isEmpty()) {
+            tag.put(PALETTE_TAG, writePaletteTag());
+            tag.putByteArray(BELT_DATA_TAG, BeltContentsCodec.encode(queue));
+            if (!hasUnassignedItemIds) {
+                tag.putBoolean(NORMALIZED_TAG, true);
+            }
+        }
+    }
+
+    // Returns true when the contents were restored as saved, with every item already carrying an id.
+    private boolean readContents(CompoundTag tag) {
+        if (tag.contains(BELT_DATA_TAG, Tag.TAG_BYTE_ARRAY)) {
+            BeltContentsCodec.Contents contents = BeltContentsCodec.decode(tag.getByteArray(BELT_DATA_TAG));
+            if (contents == null) {
+                palette.clear();
+                resetQueue();
+                return false;
+            }
+            if (tag.getBoolean(NORMALIZED_TAG) && restoreNormalizedRuns(tag, contents.runs(), contents.ids())) {
+                return true;
+            }
+            readItemRuns(tag, contents.runs(), contents.ids());
+        } else if (tag.contains(ITEM_RUNS_TAG, Tag.TAG_INT_ARRAY)) {
+            readItemRuns(tag, tag.getIntArray(ITEM_RUNS_TAG), tag.getLongArray(ITEM_IDS_TAG));
+        } else if (tag.contains(INVENTORY_TAG, Tag.TAG_COMPOUND)) {
+            readLegacyInventory(tag, tag.getCompound(INVENTORY_TAG));
+        } else {
+            palette.clear();
+            resetQueue();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean restoreNormalizedRuns(CompoundTag tag, int[] runs, long[] savedIds) {
+        if (!BeltItemQueue.isNormalizedLayout(runs, savedIds.length, bufferSlots)) {
+            return false;
+        }
+
+        ListTag paletteTag = tag.getList(PALETTE_TAG, Tag.TAG_COMPOUND);
+        ItemStack[] savedPalette = new ItemStack[paletteTag.size()];
+        for (int key = 0; key < savedPalette.length; key++) {
+            savedPalette[key] = ItemStack.of(paletteTag.getCompound(key));
+        }
+        for (int offset = 0; offset < runs.length; offset += BeltItemQueue.RUN_RECORD_SIZE) {
+            int savedKey = runs[offset];
+            if (savedKey < 0 || savedKey >= savedPalette.length || savedPalette[savedKey].isEmpty()) {
+                return false;
+            }
+        }
+
+        palette.clear();
+        for (int offset = 0; offset < runs.length; offset += BeltItemQueue.RUN_RECORD_SIZE) {
+            int key = palette.acquire(savedPalette[runs[offset]]);
+            for (int i = 1; i < runs[offset + 1]; i++) {
+                palette.retain(key);
+            }
+            runs[offset] = key;
+        }
+
+        resetQueue();
+        queue.restoreRuns(runs, savedIds);
+        return true;
+    }
+
+    // Chunk loads run load() before the level is attached, so stored contents are pulled in onLoad().
+    private void loadFromStore(ServerLevel serverLevel) {
+        pendingStoreLoad = false;
+        CompoundTag contents = BeltContentStore.get(serverLevel).read(worldPosition, storeGeneration);
+        if (contents == null) {
+            return;
+        }
+
+        boolean wasSuppressed = suppressDirtyCallbacks;
+        suppressDirtyCallbacks = true;
+        hasUnassignedItemIds = !readContents(contents) && hasItemWithoutId();
+        suppressDirtyCallbacks = wasSuppressed;
+    }
+
+    private void dropLegacyOverflow() {
+        if (legacyOverflow == null || level == null) {
+            return;
+        }
+
+        if (!level.isClientSide) {
+            for (ItemStack stack : legacyOverflow) {
+                Containers.dropItemStack(level, worldPosition.getX(), worldPosition.getY(), worldPosition.getZ(), stack);
+            }
+        }
+        legacyOverflow = null;
+    }
+
+    private ListTag writePaletteTag() {
+        ListTag entries = new ListTag();
+        for (int key = 0; key < palette.size(); key++) {
+            ItemStack stack = palette.get(key);
+            entries.add(stack.isEmpty() ? new CompoundTag() : stack.save(new CompoundTag()));
         }
-        for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
-            capability.invalidate();
+        return entries;
+    }
+
+    private void readItemRuns(CompoundTag tag, int[] runs, long[] savedIds) {
+        ListTag paletteTag = tag.getList(PALETTE_TAG, Tag.TAG_COMPOUND);
+        ItemStack[] savedPalette = new ItemStack[paletteTag.size()];
+        for (int key = 0; key < savedPalette.length; key++) {
+            savedPalette[key] = ItemStack.of(paletteTag.getCompound(key));
         }
-        sidedCapabilities.clear();
 
-        unsidedCapability = LazyOptional.of(() -> new SplineInventoryHandler(null));
-        for (Direction direction : Direction.values()) {
-            sidedCapabilities.put(direction, LazyOptional.of(() -> new SplineInventoryHandler(direction)));
+        int[] keys = new int[bufferSlots];
+        int[] positions = new int[bufferSlots];
+        long[] ids = new long[bufferSlots];
+
+        palette.clear();
+        int count = 0;
+        int itemIndex = 0;
+        for (int offset = 0; offset + BeltItemQueue.RUN_RECORD_SIZE <= runs.length; offset += BeltItemQueue.RUN_RECORD_SIZE) {
+            int savedKey = runs[offset];
+            int length = Math.max(0, runs[offset + 1]);
+            int head = runs[offset + 2];
+            int spacing = Math.max(1, runs[offset + 3]);
+            ItemStack stack = savedKey >= 0 && savedKey < savedPalette.length ? savedPalette[savedKey] : ItemStack.EMPTY;
+
+            for (int i = 0; i < length; i++, itemIndex++) {
+                if (stack.isEmpty() || count >= bufferSlots) {
+                    continue;
+                }
+                keys[count] = palette.acquire(stack);
+                positions[count] = head - (i * spacing);
+                ids[count] = itemIndex < savedIds.length ? Math.max(0L, savedIds[itemIndex]) : 0L;
+                count++;
+            }
         }
+
+        resetQueue();
+        queue.rebuild(keys, positions, ids, count);
     }
 
-    private ItemStackHandler createInventory(int slots) {
-        return new ItemStackHandler(slots) {
-            @Override
-            public int getSlotLimit(int slot) {
-                return 1;
+    private void readLegacyInventory(CompoundTag tag, CompoundTag inventoryTag) {
+        int[] slotKeys = new int[bufferSlots];
+        Arrays.fill(slotKeys, -1);
+
+        palette.clear();
+        legacyOverflow = null;
+        ListTag items = inventoryTag.getList(INVENTORY_ITEMS_TAG, Tag.TAG_COMPOUND);
+        int[] slotOverflow = new int[bufferSlots];
+        for (int i = 0; i < items.size(); i++) {
+            CompoundTag itemTag = items.getCompound(i);
+            int slot = itemTag.getInt(INVENTORY_SLOT_TAG);
+            if (slot < 0 || slot >= bufferSlots) {
+                continue;
+            }
+
+            ItemStack stack = ItemStack.of(itemTag);
+            if (stack.isEmpty()) {
+                continue;
             }
 
-            @Override
-            protected void onContentsChanged(int slot) {
-                if (!suppressDirtyCallbacks) {
-                    markDirtyForSync();
+            palette.release(slotKeys[slot]);
+            slotKeys[slot] = palette.acquire(stack);
+            slotOverflow[slot] = stack.getCount() - 1;
+        }
+
+        // Older saves could hold stacked slots; spread each one over free slots like normalize used to,
+        // and drop whatever still does not fit once the belt is in a level.
+        int freeSlot = 0;
+        for (int slot = 0; slot < bufferSlots; slot++) {
+            while (slotOverflow[slot] > 0) {
+                while (freeSlot < bufferSlots && slotKeys[freeSlot] >= 0) {
+                    freeSlot++;
+                }
+                if (freeSlot == bufferSlots) {
+                    break;
+                }
+
+                palette.retain(slotKeys[slot]);
+                slotKeys[freeSlot] = slotKeys[slot];
+                slotOverflow[slot]--;
+            }
+            if (slotOverflow[slot] > 0) {
+                if (legacyOverflow == null) {
+                    legacyOverflow = new ArrayList<>();
                 }
+                legacyOverflow.add(palette.get(slotKeys[slot]).copyWithCount(slotOverflow[slot]));
+            }
+        }
+
+        int[] slotPositions = tag.getIntArray(RENDER_POSITIONS_TAG);
+        long[] slotIds = tag.getLongArray(ITEM_IDS_TAG);
+        int[] keys = new int[bufferSlots];
+        int[] positions = new int[bufferSlots];
+        long[] ids = new long[bufferSlots];
+        int count = 0;
+        for (int slot = 0; slot < bufferSlots; slot++) {
+            if (slotKeys[slot] < 0) {
+                continue;
             }
-        };
+            keys[count] = slotKeys[slot];
+            positions[count] = slot < slotPositions.length ? Math.max(0, slotPositions[slot]) : 0;
+            ids[count] = slot < slotIds.length ? Math.max(0L, slotIds[slot]) : 0L;
+            count++;
+        }
+
+        resetQueue();
+        queue.rebuild(keys, positions, ids, count);
     }
 
+    // Compact view for pipes and hoppers: slot 0 extracts the head at the output, slot 1 is the
+    // insertion inbox. External scans touch two slots no matter how long the belt is.
     private final class SplineInventoryHandler implements IItemHandler {
         @Nullable
         private final Direction side;
@@ -1682,105 +2318,125 @@ public class ConveyorBlockEntity extends BlockEntity {
 
         @Override
         public int getSlots() {
-            return bufferSlots;
+            return FACADE_SLOTS;
         }
 
         @Override
         public ItemStack getStackInSlot(int slot) {
-            if (slot < 0 || slot >= bufferSlots) {
-                return ItemStack.EMPTY;
+            if (slot == FACADE_EXTRACT_SLOT) {
+                return peekHead();
             }
-            return inventory.getStackInSlot(slot);
+            return slot == FACADE_INSERT_SLOT ? inbox : ItemStack.EMPTY;
         }
 
         @Override
         public ItemStack insertItem(int slot, ItemStack stack, boolean simulate) {
-            if (slot < 0 || slot >= bufferSlots) {
+            if (slot != FACADE_INSERT_SLOT) {
                 return stack;
             }
-            return insertFromCapability(side, slot, stack, simulate);
+            return insertFromCapability(side, stack, simulate);
         }
 
         @Override
         public ItemStack extractItem(int slot, int amount, boolean simulate) {
-            if (slot < 0 || slot >= bufferSlots) {
+            if (slot != FACADE_EXTRACT_SLOT) {
                 return ItemStack.EMPTY;
             }
-            return extractFromCapability(side, slot, amount, simulate);
+            return extractFromCapability(side, amount, simulate);
         }
 
         @Override
         public int getSlotLimit(int slot) {
-            return 1;
+            return slot == FACADE_INSERT_SLOT ? INBOX_CAPACITY : 1;
         }
 
         @Override
         public boolean isItemValid(int slot, ItemStack stack) {
-            return !stack.isEmpty();
+            return slot == FACADE_INSERT_SLOT && !stack.isEmpty();
         }
     }
 
-    private static final class BufferedItem {
-        private final ItemStack stack;
-        private final long itemId;
-        private final double progress;
-
-        private BufferedItem(ItemStack stack, long itemId, double progress) {
-            this.stack = stack;
-            this.itemId = itemId;
-            this.progress = progress;
+    // Read-only view with one slot per buffer position, for debugging belt contents.
+    private final class DebugSlotView implements IItemHandler {
+        @Override
+        public int getSlots() {
+            return bufferSlots;
         }
-    }
 
-    private static final class HeadTransfer {
-        private final ItemStack stack;
-        private final long itemId;
-
-        private HeadTransfer(ItemStack stack, long itemId) {
-            this.stack = stack;
-            this.itemId = itemId;
+        @Override
+        public ItemStack getStackInSlot(int slot) {
+            if (slot < 0 || slot >= bufferSlots) {
+                return ItemStack.EMPTY;
+            }
+            return palette.get(queue.keyAt(slot));
         }
-    }
-
-    private static final class ClientRenderPrediction {
-        private final List<ClientPredictedRenderItem> items;
 
-        private ClientRenderPrediction(List<ClientPredictedRenderItem> items) {
-            this.items = items;
+        @Override
+        public ItemStack insertItem(int slot, ItemStack stack, boolean simulate) {
+            return stack;
         }
 
-        private List<ClientPredictedRenderItem> items() {
-            return items;
+        @Override
+        public ItemStack extractItem(int slot, int amount, boolean simulate) {
+            return ItemStack.EMPTY;
         }
-    }
 
-    private static final class ClientPredictedQueueItem {
-        private final long visualKey;
-        private final ItemStack stack;
-        private int position;
+        @Override
+        public int getSlotLimit(int slot) {
+            return 1;
+        }
 
-        private ClientPredictedQueueItem(long visualKey, ItemStack stack, int position) {
-            this.visualKey = visualKey;
-            this.stack = stack;
-            this.position = position;
+        @Override
+        public boolean isItemValid(int slot, ItemStack stack) {
+            return false;
         }
     }
 
-    private static final class ClientPredictedRenderItem {
-        private final long visualKey;
-        private final ItemStack stack;
-        private final double slotUnits;
-
-        private ClientPredictedRenderItem(long visualKey, ItemStack stack, double slotUnits) {
-            this.visualKey = visualKey;
-            this.stack = stack;
-            this.slotUnits = slotUnits;
-        }
+    private static final class ClientState {
+        // Reflection targets are the same for every belt, so they are resolved once per game.
+        @Nullable
+        private static Method clientPutNonPlayerEntityMethod;
+        @Nullable
+        private static Method clientRemoveEntityMethod;
+        private static boolean resolvedClientEntityMethods;
+        @Nullable
+        private static Field itemBobOffsField;
+        private static boolean resolvedItemBobField;
+
+        private final Long2ObjectOpenHashMap<SplineVisualItemEntity> clientVisualItems = new Long2ObjectOpenHashMap<>();
+        private long lastClientAppliedRevision = Long.MIN_VALUE;
+        private long clientSnapshotGameTime = Long.MIN_VALUE;
+        private int clientVisualGeneration;
+        private int[] clientQueueKeys = new int[0];
+        private long[] clientQueueIds = new long[0];
+        private int[] clientPredictedPositions = new int[0];
+        private int[] clientPreviewPositions = new int[0];
+        private boolean[] clientTakenPositions = new boolean[0];
+        private int clientHeadCheckIndex = -1;
+        private boolean clientHeadCheckResult;
+
+        private final double[] visualCurve = new double[12];
+        private boolean visualCurveValid;
+        @Nullable
+        private Direction visualCurveStartFacing;
+        @Nullable
+        private Direction visualCurveOutputSide;
+        @Nullable
+        private BlockPos visualCurveEndPos;
+        private double visualSampleX;
+        private double visualSampleY;
+        private double visualSampleZ;
     }
 
     private static class SplineVisualItemEntity extends ItemEntity {
+        private int visualGeneration;
+        private long itemId;
+        @Nullable
+        private ConveyorBlockEntity owner;
+        private long parkedUntilTick = Long.MIN_VALUE;
+
         private SplineVisualItemEntity(Level level, double x, double y, double z, ItemStack stack) {
-            super(level, x, y, z, stack.copy());
+            super(level, x, y, z, stack.copyWithCount(1));
             this.noPhysics = true;
             this.setNoGravity(true);
             this.setNeverPickUp();
@@ -1811,28 +2467,28 @@ public class ConveyorBlockEntity extends BlockEntity {
             return;
         }
 
-        if (!resolvedItemBobField) {
-            resolvedItemBobField = true;
+        if (!ClientState.resolvedItemBobField) {
+            ClientState.resolvedItemBobField = true;
             try {
-                itemBobOffsField = ItemEntity.class.getDeclaredField("bobOffs");
+                ClientState.itemBobOffsField = ItemEntity.class.getDeclaredField("bobOffs");
             } catch (NoSuchFieldException first) {
                 try {
-                    itemBobOffsField = ItemEntity.class.getDeclaredField("f_31983_");
+                    ClientState.itemBobOffsField = ItemEntity.class.getDeclaredField("f_31983_");
                 } catch (NoSuchFieldException ignored) {
-                    itemBobOffsField = null;
+                    ClientState.itemBobOffsField = null;
                 }
             }
-            if (itemBobOffsField != null) {
-                itemBobOffsField.setAccessible(true);
+            if (ClientState.itemBobOffsField != null) {
+                ClientState.itemBobOffsField.setAccessible(true);
             }
         }
 
-        if (itemBobOffsField == null) {
+        if (ClientState.itemBobOffsField == null) {
             return;
         }
 
         try {
-            itemBobOffsField.setFloat(visual, bobOffs);
+            ClientState.itemBobOffsField.setFloat(visual, bobOffs);
         } catch (IllegalAccessException ignored) {
             // Fallback is vanilla bob behavior.
         }
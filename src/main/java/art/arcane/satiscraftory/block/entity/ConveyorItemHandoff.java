@@ -0,0 +1,15 @@
+package art.arcane.satiscraftory.block.entity;
+
+import net.minecraft.core.Direction;
+import net.minecraft.world.item.ItemStack;
+
+public interface ConveyorItemHandoff {
+    // The stack may be shared by the sender, so receivers copy whatever they keep.
+    boolean acceptItem(Direction side, ItemStack stack, long itemId, boolean simulate);
+
+    long peekItemId(Direction side);
+
+    // Called by a receiver that refused an item once it has room again; side faces the receiver.
+    default void onDownstreamSpaceFreed(Direction side) {
+    }
+}
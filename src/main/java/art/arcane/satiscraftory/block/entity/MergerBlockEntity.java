@@ -1,11 +1,17 @@
 package art.arcane.satiscraftory.block.entity;
 
 import art.arcane.satiscraftory.Satiscraftory;
+import art.arcane.satiscraftory.data.ConveyorItemIdAllocator;
+import art.arcane.satiscraftory.logistics.DirtyBlockEntityTracker;
+import art.arcane.satiscraftory.logistics.LogisticsTickScheduler;
 import art.arcane.satiscraftory.block.MergerBlock;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.Containers;
 import net.minecraft.world.item.ItemStack;
 import net.minecraft.world.level.Level;
@@ -15,72 +21,214 @@ import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.ForgeCapabilities;
 import net.minecraftforge.common.util.LazyOptional;
 import net.minecraftforge.items.IItemHandler;
-import net.minecraftforge.items.ItemStackHandler;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.Map;
 
-public class MergerBlockEntity extends BlockEntity {
+public class MergerBlockEntity extends BlockEntity implements ConveyorItemHandoff, LogisticsTickScheduler.Node {
     private static final String INVENTORY_TAG = "inventory";
+    private static final String INVENTORY_ITEMS_TAG = "Items";
+    private static final String ITEM_ID_TAG = "item_id";
+    private static final String INPUTS_TAG = "inputs";
+    private static final String ITEMS_TAG = "items";
+    private static final String ITEM_IDS_TAG = "item_ids";
+    private static final String NEXT_INPUT_INDEX_TAG = "next_input_index";
     private static final int BUFFER_SLOT = 0;
+    private static final int INPUT_FACE_COUNT = 3;
+    private static final int LEGACY_INPUT_INDEX = 1;
+    // Two per side lets each of three Mark 5 inputs keep an item waiting while another one leaves.
+    private static final int INPUT_QUEUE_CAPACITY = 2;
+    private static final int MAX_TRANSFERS_PER_TICK = INPUT_FACE_COUNT * INPUT_QUEUE_CAPACITY;
+    private static final int OUTPUT_BLOCKED_BACKOFF_MAX_TICKS = 20;
+    // getInputOrder() per horizontal output side, by 2D data value; shared, so never written to.
+    private static final Direction[][] INPUT_ORDERS = new Direction[4][];
+
+    static {
+        for (Direction output : Direction.Plane.HORIZONTAL) {
+            INPUT_ORDERS[output.get2DDataValue()] = new Direction[]{
+                    output.getClockWise(),
+                    output.getOpposite(),
+                    output.getCounterClockWise()
+            };
+        }
+    }
 
-    private ItemStackHandler inventory;
-    private boolean suppressDirtyCallbacks;
+    // One small ring per input side, indexed like getInputOrder().
+    private final ItemStack[] queuedItems = new ItemStack[INPUT_FACE_COUNT * INPUT_QUEUE_CAPACITY];
+    private final long[] queuedIds = new long[INPUT_FACE_COUNT * INPUT_QUEUE_CAPACITY];
+    private final int[] queueStarts = new int[INPUT_FACE_COUNT];
+    private final int[] queueCounts = new int[INPUT_FACE_COUNT];
+    private int nextInputIndex;
+    private int outputBackoffTicks;
+    private long outputBackoffUntil = Long.MIN_VALUE;
 
     private LazyOptional<IItemHandler> unsidedCapability = LazyOptional.empty();
     private final Map<Direction, LazyOptional<IItemHandler>> sidedCapabilities = new EnumMap<>(Direction.class);
+    private boolean capabilitiesValid = true;
 
     public MergerBlockEntity(BlockPos pos, BlockState blockState) {
         super(Satiscraftory.MERGER_BLOCK_ENTITY.get(), pos, blockState);
-        inventory = createInventory();
-        rebuildCapabilities();
+        Arrays.fill(queuedItems, ItemStack.EMPTY);
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        if (level instanceof ServerLevel serverLevel) {
+            long maxId = 0L;
+            for (long id : queuedIds) {
+                maxId = Math.max(maxId, id);
+            }
+            if (maxId > 0L) {
+                ConveyorItemIdAllocator.get(serverLevel).reserveAbove(maxId);
+            }
+        }
+        LogisticsTickScheduler.register(this);
+    }
+
+    @Override
+    public void setBlockState(BlockState state) {
+        boolean rotated = state != getBlockState();
+        super.setBlockState(state);
+        if (rotated && level instanceof ServerLevel) {
+            // Facing is the only property, so any change points the block at other neighbours.
+            LogisticsTickScheduler.invalidate(this);
+        }
+    }
+
+    @Override
+    public void setRemoved() {
+        if (level instanceof ServerLevel) {
+            LogisticsTickScheduler.unregister(this);
+        }
+        super.setRemoved();
+    }
+
+    @Override
+    public long tickScheduled(long gameTime) {
+        tickServer(getBlockState());
+        // Sleeps while empty or backing off; new items, freed space and neighbour changes wake it.
+        if (getNextInputIndex() < 0) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(gameTime + 1, outputBackoffUntil);
     }
 
-    public static void serverTick(Level level, BlockPos pos, BlockState state, MergerBlockEntity merger) {
-        merger.tickServer(state);
+    @Override
+    public void collectDownstream(LongArrayList positions) {
+        positions.add(worldPosition.relative(getOutputSide(getBlockState())).asLong());
     }
 
     private void tickServer(BlockState state) {
-        ItemStack bufferStack = inventory.getStackInSlot(BUFFER_SLOT);
-        if (bufferStack.isEmpty()) {
+        int inputIndex = getNextInputIndex();
+        long now = level == null ? 0L : level.getGameTime();
+        if (inputIndex < 0 || now < outputBackoffUntil) {
             return;
         }
 
         Direction outputSide = getOutputSide(state);
-        IItemHandler outputHandler = getOutputHandler(outputSide);
-        if (outputHandler == null) {
+        BlockEntity target = getOutputTarget(outputSide);
+        if (target == null) {
+            backOffOutput(now);
             return;
         }
 
-        ItemStack single = bufferStack.copy();
-        single.setCount(1);
+        Direction sideOnTarget = outputSide.getOpposite();
+        IItemHandler outputHandler = target instanceof ConveyorItemHandoff ? null : getItemHandler(target, sideOnTarget);
+        int moved = 0;
+        while (inputIndex >= 0 && moved < MAX_TRANSFERS_PER_TICK) {
+            if (!transferTo(target, outputHandler, sideOnTarget, inputIndex)) {
+                backOffOutput(now);
+                break;
+            }
 
-        if (!insertIntoHandler(outputHandler, single, true).isEmpty()) {
-            return;
+            popHead(inputIndex);
+            nextInputIndex = (inputIndex + 1) % INPUT_FACE_COUNT;
+            moved++;
+            inputIndex = getNextInputIndex();
         }
-        if (!insertIntoHandler(outputHandler, single, false).isEmpty()) {
-            return;
+
+        if (moved > 0) {
+            outputBackoffTicks = 0;
+            DirtyBlockEntityTracker.markDirty(this);
+        }
+    }
+
+    // A full output waits longer each time until it reports space or a neighbour changes.
+    private void backOffOutput(long now) {
+        outputBackoffTicks = Math.min(OUTPUT_BLOCKED_BACKOFF_MAX_TICKS, Math.max(1, outputBackoffTicks * 2));
+        outputBackoffUntil = now + outputBackoffTicks;
+    }
+
+    // Sends an arriving item straight onto the downstream conveyor in the same call, so a junction
+    // adds no tick of latency. Only an empty merger passes through, which keeps the input turns fair.
+    private boolean tryPassThrough(int inputIndex, ItemStack stack, long itemId) {
+        if (getNextInputIndex() >= 0 || level == null) {
+            return false;
         }
 
-        suppressDirtyCallbacks = true;
-        inventory.setStackInSlot(BUFFER_SLOT, ItemStack.EMPTY);
-        suppressDirtyCallbacks = false;
-        setChanged();
+        long now = level.getGameTime();
+        Direction outputSide = getOutputSide(getBlockState());
+        if (now < outputBackoffUntil || !(getOutputTarget(outputSide) instanceof ConveyorBlockEntity conveyor)) {
+            return false;
+        }
+
+        if (!conveyor.acceptItem(outputSide.getOpposite(), stack, itemId, false)) {
+            backOffOutput(now);
+            return false;
+        }
+
+        outputBackoffTicks = 0;
+        nextInputIndex = (inputIndex + 1) % INPUT_FACE_COUNT;
+        return true;
+    }
+
+    @Override
+    public void onDownstreamSpaceFreed(Direction side) {
+        if (canExtractFromSide(side)) {
+            wakeOutput();
+        }
+    }
+
+    public void onNeighborChanged(BlockPos neighborPos) {
+        if (worldPosition.relative(getOutputSide(getBlockState())).equals(neighborPos)) {
+            wakeOutput();
+        }
+    }
+
+    private void wakeOutput() {
+        outputBackoffTicks = 0;
+        outputBackoffUntil = Long.MIN_VALUE;
+        if (getNextInputIndex() >= 0) {
+            LogisticsTickScheduler.wake(this);
+        }
+    }
+
+    // Inputs take turns from nextInputIndex, so no side can starve the others.
+    private int getNextInputIndex() {
+        for (int attempt = 0; attempt < INPUT_FACE_COUNT; attempt++) {
+            int inputIndex = (nextInputIndex + attempt) % INPUT_FACE_COUNT;
+            if (queueCounts[inputIndex] > 0) {
+                return inputIndex;
+            }
+        }
+        return -1;
     }
 
     @Nullable
-    private IItemHandler getOutputHandler(Direction outputSide) {
+    private BlockEntity getOutputTarget(Direction outputSide) {
         if (level == null) {
             return null;
         }
 
         BlockEntity target = level.getBlockEntity(worldPosition.relative(outputSide));
-        if (target == null || target == this) {
-            return null;
-        }
+        return target == this ? null : target;
+    }
 
-        Direction sideOnTarget = outputSide.getOpposite();
+    @Nullable
+    private static IItemHandler getItemHandler(BlockEntity target, Direction sideOnTarget) {
         LazyOptional<IItemHandler> sidedHandler = target.getCapability(ForgeCapabilities.ITEM_HANDLER, sideOnTarget);
         if (sidedHandler.isPresent()) {
             return sidedHandler.orElse(null);
@@ -90,47 +238,152 @@ public class MergerBlockEntity extends BlockEntity {
     }
 
     private static ItemStack insertIntoHandler(IItemHandler handler, ItemStack stack, boolean simulate) {
-        ItemStack remaining = stack.copy();
+        ItemStack remaining = stack;
         for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
             remaining = handler.insertItem(slot, remaining, simulate);
         }
         return remaining;
     }
 
-    public void dropContents(Level level, BlockPos pos) {
-        ItemStack stack = inventory.getStackInSlot(BUFFER_SLOT);
-        if (stack.isEmpty()) {
-            return;
+    private boolean transferTo(BlockEntity target, @Nullable IItemHandler outputHandler, Direction sideOnTarget, int inputIndex) {
+        // Queued stacks are owned here; on success the head moves to the target as is.
+        int head = headIndex(inputIndex);
+        ItemStack single = queuedItems[head];
+        if (target instanceof ConveyorItemHandoff handoff) {
+            return handoff.acceptItem(sideOnTarget, single, queuedIds[head], false);
+        }
+
+        if (outputHandler == null) {
+            return false;
+        }
+
+        if (!insertIntoHandler(outputHandler, single, true).isEmpty()) {
+            return false;
+        }
+        return insertIntoHandler(outputHandler, single, false).isEmpty();
+    }
+
+    private int headIndex(int inputIndex) {
+        return (inputIndex * INPUT_QUEUE_CAPACITY) + queueStarts[inputIndex];
+    }
+
+    private void pushTail(int inputIndex, ItemStack single, long itemId) {
+        int index = (inputIndex * INPUT_QUEUE_CAPACITY)
+                + ((queueStarts[inputIndex] + queueCounts[inputIndex]) % INPUT_QUEUE_CAPACITY);
+        queuedItems[index] = single;
+        queuedIds[index] = Math.max(0L, itemId);
+        queueCounts[inputIndex]++;
+    }
+
+    private ItemStack popHead(int inputIndex) {
+        int head = headIndex(inputIndex);
+        ItemStack stack = queuedItems[head];
+        queuedItems[head] = ItemStack.EMPTY;
+        queuedIds[head] = 0L;
+        queueStarts[inputIndex] = (queueStarts[inputIndex] + 1) % INPUT_QUEUE_CAPACITY;
+        queueCounts[inputIndex]--;
+        return stack;
+    }
+
+    private void clearQueues() {
+        Arrays.fill(queuedItems, ItemStack.EMPTY);
+        Arrays.fill(queuedIds, 0L);
+        Arrays.fill(queueStarts, 0);
+        Arrays.fill(queueCounts, 0);
+    }
+
+    @Override
+    public boolean acceptItem(Direction side, ItemStack stack, long itemId, boolean simulate) {
+        int inputIndex = getInputIndex(side);
+        if (stack.isEmpty() || inputIndex < 0 || queueCounts[inputIndex] >= INPUT_QUEUE_CAPACITY) {
+            return false;
+        }
+
+        if (!simulate) {
+            if (!tryPassThrough(inputIndex, stack, itemId)) {
+                pushTail(inputIndex, stack.copyWithCount(1), itemId);
+                LogisticsTickScheduler.wake(this);
+            }
+            DirtyBlockEntityTracker.markDirty(this);
         }
+        return true;
+    }
 
-        Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), stack);
-        suppressDirtyCallbacks = true;
-        inventory.setStackInSlot(BUFFER_SLOT, ItemStack.EMPTY);
-        suppressDirtyCallbacks = false;
+    @Override
+    public long peekItemId(Direction side) {
+        int inputIndex = getNextInputIndex();
+        if (!canExtractFromSide(side) || inputIndex < 0) {
+            return 0L;
+        }
+        return queuedIds[headIndex(inputIndex)];
+    }
+
+    public void dropContents(Level level, BlockPos pos) {
+        for (ItemStack stack : queuedItems) {
+            if (!stack.isEmpty()) {
+                Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), stack);
+            }
+        }
+        clearQueues();
     }
 
     @Override
     protected void saveAdditional(CompoundTag tag) {
         super.saveAdditional(tag);
-        tag.put(INVENTORY_TAG, inventory.serializeNBT());
+        ListTag inputs = new ListTag();
+        for (int inputIndex = 0; inputIndex < INPUT_FACE_COUNT; inputIndex++) {
+            ListTag items = new ListTag();
+            long[] ids = new long[queueCounts[inputIndex]];
+            for (int i = 0; i < queueCounts[inputIndex]; i++) {
+                int index = (inputIndex * INPUT_QUEUE_CAPACITY) + ((queueStarts[inputIndex] + i) % INPUT_QUEUE_CAPACITY);
+                items.add(queuedItems[index].save(new CompoundTag()));
+                ids[i] = queuedIds[index];
+            }
+
+            CompoundTag input = new CompoundTag();
+            input.put(ITEMS_TAG, items);
+            input.putLongArray(ITEM_IDS_TAG, ids);
+            inputs.add(input);
+        }
+        tag.put(INPUTS_TAG, inputs);
+        tag.putInt(NEXT_INPUT_INDEX_TAG, nextInputIndex);
     }
 
     @Override
     public void load(CompoundTag tag) {
         super.load(tag);
 
-        suppressDirtyCallbacks = true;
-        inventory = createInventory();
-        if (tag.contains(INVENTORY_TAG, Tag.TAG_COMPOUND)) {
-            inventory.deserializeNBT(tag.getCompound(INVENTORY_TAG));
+        clearQueues();
+        if (tag.contains(INPUTS_TAG, Tag.TAG_LIST)) {
+            ListTag inputs = tag.getList(INPUTS_TAG, Tag.TAG_COMPOUND);
+            for (int inputIndex = 0; inputIndex < inputs.size() && inputIndex < INPUT_FACE_COUNT; inputIndex++) {
+                CompoundTag input = inputs.getCompound(inputIndex);
+                ListTag items = input.getList(ITEMS_TAG, Tag.TAG_COMPOUND);
+                long[] ids = input.getLongArray(ITEM_IDS_TAG);
+                for (int i = 0; i < items.size() && queueCounts[inputIndex] < INPUT_QUEUE_CAPACITY; i++) {
+                    ItemStack stack = ItemStack.of(items.getCompound(i));
+                    if (!stack.isEmpty()) {
+                        pushTail(inputIndex, stack.copyWithCount(1), i < ids.length ? ids[i] : 0L);
+                    }
+                }
+            }
+        } else if (tag.contains(INVENTORY_TAG, Tag.TAG_COMPOUND)) {
+            // Older mergers kept one item in a single-slot ItemStackHandler.
+            ListTag items = tag.getCompound(INVENTORY_TAG).getList(INVENTORY_ITEMS_TAG, Tag.TAG_COMPOUND);
+            for (int i = 0; i < items.size() && queueCounts[LEGACY_INPUT_INDEX] == 0; i++) {
+                ItemStack stack = ItemStack.of(items.getCompound(i));
+                if (!stack.isEmpty()) {
+                    pushTail(LEGACY_INPUT_INDEX, stack.copyWithCount(1), tag.getLong(ITEM_ID_TAG));
+                }
+            }
         }
-        clampInventoryToSingleItem();
-        suppressDirtyCallbacks = false;
+        nextInputIndex = Math.floorMod(tag.getInt(NEXT_INPUT_INDEX_TAG), INPUT_FACE_COUNT);
     }
 
     @Override
     public void invalidateCaps() {
         super.invalidateCaps();
+        capabilitiesValid = false;
         unsidedCapability.invalidate();
         for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
             capability.invalidate();
@@ -141,78 +394,56 @@ public class MergerBlockEntity extends BlockEntity {
     @Override
     public void reviveCaps() {
         super.reviveCaps();
-        rebuildCapabilities();
+        capabilitiesValid = true;
     }
 
     @Override
     public <T> LazyOptional<T> getCapability(Capability<T> cap, @Nullable Direction side) {
-        if (cap == ForgeCapabilities.ITEM_HANDLER) {
+        if (cap == ForgeCapabilities.ITEM_HANDLER && capabilitiesValid) {
             if (side == null) {
+                if (!unsidedCapability.isPresent()) {
+                    unsidedCapability = LazyOptional.of(() -> new MergerInventoryHandler(null));
+                }
                 return unsidedCapability.cast();
             }
-            LazyOptional<IItemHandler> sided = sidedCapabilities.get(side);
-            if (sided != null) {
-                return sided.cast();
-            }
-            return unsidedCapability.cast();
+            return sidedCapabilities.computeIfAbsent(side,
+                    direction -> LazyOptional.of(() -> new MergerInventoryHandler(direction))).cast();
         }
         return super.getCapability(cap, side);
     }
 
-    private void rebuildCapabilities() {
-        if (unsidedCapability.isPresent()) {
-            unsidedCapability.invalidate();
-        }
-        for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
-            capability.invalidate();
-        }
-        sidedCapabilities.clear();
-
-        unsidedCapability = LazyOptional.of(() -> new MergerInventoryHandler(null));
-        for (Direction direction : Direction.values()) {
-            sidedCapabilities.put(direction, LazyOptional.of(() -> new MergerInventoryHandler(direction)));
+    private static Direction getOutputSide(BlockState state) {
+        if (state.hasProperty(MergerBlock.OUTPUT_FACING)) {
+            return state.getValue(MergerBlock.OUTPUT_FACING);
         }
+        return Direction.NORTH;
     }
 
-    private ItemStackHandler createInventory() {
-        return new ItemStackHandler(1) {
-            @Override
-            public int getSlotLimit(int slot) {
-                return 1;
-            }
-
-            @Override
-            protected void onContentsChanged(int slot) {
-                if (!suppressDirtyCallbacks) {
-                    setChanged();
-                }
-            }
-        };
-    }
-
-    private void clampInventoryToSingleItem() {
-        ItemStack stack = inventory.getStackInSlot(BUFFER_SLOT);
-        if (stack.isEmpty()) {
-            return;
-        }
-
-        ItemStack single = stack.copy();
-        single.setCount(1);
-        inventory.setStackInSlot(BUFFER_SLOT, single);
+    private static Direction[] getInputOrder(Direction outputSide) {
+        Direction output = outputSide.getAxis().isHorizontal() ? outputSide : Direction.NORTH;
+        return INPUT_ORDERS[output.get2DDataValue()];
     }
 
-    private static Direction getOutputSide(BlockState state) {
-        if (state.hasProperty(MergerBlock.OUTPUT_FACING)) {
-            return state.getValue(MergerBlock.OUTPUT_FACING);
+    private int getInputIndex(Direction side) {
+        Direction[] inputOrder = getInputOrder(getOutputSide(getBlockState()));
+        for (int inputIndex = 0; inputIndex < INPUT_FACE_COUNT; inputIndex++) {
+            if (inputOrder[inputIndex] == side) {
+                return inputIndex;
+            }
         }
-        return Direction.NORTH;
+        return -1;
     }
 
-    private boolean canInsertFromSide(Direction side) {
-        if (!side.getAxis().isHorizontal()) {
-            return false;
+    // Unsided inserts go to whichever input queue has the most room.
+    private int getUnsidedInputIndex() {
+        int best = -1;
+        for (int inputIndex = 0; inputIndex < INPUT_FACE_COUNT; inputIndex++) {
+            if (queueCounts[inputIndex] < INPUT_QUEUE_CAPACITY
+                    && (best < 0 || queueCounts[inputIndex] < queueCounts[best])) {
+                best = inputIndex;
+            }
         }
-        return side != getOutputSide(getBlockState());
+        return best;
     }
 
     private boolean canExtractFromSide(Direction side) {
@@ -224,24 +455,25 @@ public class MergerBlockEntity extends BlockEntity {
             return stack;
         }
 
-        if (side != null && !canInsertFromSide(side)) {
+        int inputIndex = side == null ? getUnsidedInputIndex() : getInputIndex(side);
+        if (inputIndex < 0) {
             return stack;
         }
 
-        if (!inventory.getStackInSlot(BUFFER_SLOT).isEmpty()) {
+        int accepted = Math.min(stack.getCount(), INPUT_QUEUE_CAPACITY - queueCounts[inputIndex]);
+        if (accepted <= 0) {
             return stack;
         }
 
-        ItemStack single = stack.copy();
-        single.setCount(1);
-        ItemStack remainder = inventory.insertItem(BUFFER_SLOT, single, simulate);
-        if (!remainder.isEmpty()) {
-            return stack;
+        if (!simulate) {
+            for (int i = 0; i < accepted; i++) {
+                pushTail(inputIndex, stack.copyWithCount(1), 0L);
+            }
+            DirtyBlockEntityTracker.markDirty(this);
+            LogisticsTickScheduler.wake(this);
         }
 
-        ItemStack leftover = stack.copy();
-        leftover.shrink(1);
-        return leftover;
+        return stack.copyWithCount(stack.getCount() - accepted);
     }
 
     private ItemStack extractFromCapability(@Nullable Direction side, int slot, int amount, boolean simulate) {
@@ -253,7 +485,19 @@ public class MergerBlockEntity extends BlockEntity {
             return ItemStack.EMPTY;
         }
 
-        return inventory.extractItem(BUFFER_SLOT, 1, simulate);
+        int inputIndex = getNextInputIndex();
+        if (inputIndex < 0) {
+            return ItemStack.EMPTY;
+        }
+
+        if (simulate) {
+            return queuedItems[headIndex(inputIndex)].copy();
+        }
+
+        ItemStack extracted = popHead(inputIndex);
+        nextInputIndex = (inputIndex + 1) % INPUT_FACE_COUNT;
+        DirtyBlockEntityTracker.markDirty(this);
+        return extracted;
     }
 
     private final class MergerInventoryHandler implements IItemHandler {
@@ -271,10 +515,11 @@ public class MergerBlockEntity extends BlockEntity {
 
         @Override
         public ItemStack getStackInSlot(int slot) {
-            if (slot != BUFFER_SLOT) {
+            int inputIndex = getNextInputIndex();
+            if (slot != BUFFER_SLOT || inputIndex < 0) {
                 return ItemStack.EMPTY;
             }
-            return inventory.getStackInSlot(BUFFER_SLOT);
+            return queuedItems[headIndex(inputIndex)];
         }
 
         @Override
@@ -289,7 +534,7 @@ public class MergerBlockEntity extends BlockEntity {
 
         @Override
         public int getSlotLimit(int slot) {
-            return 1;
+            return INPUT_QUEUE_CAPACITY;
         }
 
         @Override
@@ -1,98 +1,473 @@
 package art.arcane.satiscraftory.block.entity;
 
 import art.arcane.satiscraftory.Satiscraftory;
+import art.arcane.satiscraftory.data.ConveyorItemIdAllocator;
+import art.arcane.satiscraftory.logistics.DirtyBlockEntityTracker;
+import art.arcane.satiscraftory.logistics.LogisticsTickScheduler;
 import art.arcane.satiscraftory.block.SplitterBlock;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.core.registries.Registries;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.ListTag;
 import net.minecraft.nbt.Tag;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.tags.TagKey;
 import net.minecraft.world.Containers;
+import net.minecraft.world.item.Item;
 import net.minecraft.world.item.ItemStack;
+import net.minecraft.world.item.Items;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.entity.BlockEntity;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraftforge.common.capabilities.Capability;
 import net.minecraftforge.common.capabilities.ForgeCapabilities;
 import net.minecraftforge.common.util.LazyOptional;
+import net.minecraftforge.event.TagsUpdatedEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.items.IItemHandler;
-import net.minecraftforge.items.ItemStackHandler;
+import net.minecraftforge.registries.ForgeRegistries;
 
 import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
-public class SplitterBlockEntity extends BlockEntity {
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public class SplitterBlockEntity extends BlockEntity implements ConveyorItemHandoff, LogisticsTickScheduler.Node {
     private static final String INVENTORY_TAG = "inventory";
+    private static final String INVENTORY_ITEMS_TAG = "Items";
+    private static final String ITEMS_TAG = "items";
+    private static final String ITEM_ID_TAG = "item_id";
+    private static final String ITEM_IDS_TAG = "item_ids";
     private static final String NEXT_OUTPUT_INDEX_TAG = "next_output_index";
+    private static final String FILTERS_TAG = "filters";
+    private static final String FILTER_TYPE_TAG = "type";
+    private static final String FILTER_VALUE_TAG = "value";
     private static final int BUFFER_SLOT = 0;
     private static final int OUTPUT_FACE_COUNT = 3;
+    // Enough for a Mark 6 belt (1.5 items per tick) to keep feeding while outputs take turns.
+    private static final int BUFFER_CAPACITY = 4;
+    private static final int OUTPUT_BLOCKED_BACKOFF_MAX_TICKS = 20;
+    private static final int ALL_OUTPUTS = (1 << OUTPUT_FACE_COUNT) - 1;
+    private static final int UNROUTED = -1;
+    private static final byte FILTER_NONE = 0;
+    private static final byte FILTER_ITEM = 1;
+    private static final byte FILTER_TAG = 2;
+    private static final byte FILTER_ANY = 3;
+    private static final byte FILTER_OVERFLOW = 4;
+    // getOutputOrder() per horizontal input side, by 2D data value; shared, so never written to.
+    private static final Direction[][] OUTPUT_ORDERS = new Direction[4][];
+    // Bumped whenever tags reload; route caches built under an older value are stale.
+    private static int tagGeneration;
+
+    static {
+        for (Direction input : Direction.Plane.HORIZONTAL) {
+            OUTPUT_ORDERS[input.get2DDataValue()] = new Direction[]{
+                    input.getCounterClockWise(),
+                    input.getOpposite(),
+                    input.getClockWise()
+            };
+        }
+    }
 
-    private ItemStackHandler inventory;
+    private final ItemStack[] buffer = new ItemStack[BUFFER_CAPACITY];
+    private final long[] bufferIds = new long[BUFFER_CAPACITY];
+    private int bufferStart;
+    private int bufferCount;
     private int nextOutputIndex;
-    private boolean suppressDirtyCallbacks;
+
+    // Filters are indexed like getOutputOrder(), so they follow the splitter when it is rotated.
+    private final OutputFilter[] filters = new OutputFilter[OUTPUT_FACE_COUNT];
+    // Output mask per item, filled on first sight; cleared whenever a filter changes.
+    private final Reference2IntOpenHashMap<Item> routes = new Reference2IntOpenHashMap<>();
+    private int routesTagGeneration = tagGeneration;
+    private boolean filtered;
+    private int anyMask;
+    private int overflowMask;
+
+    private final BlockEntity[] outputTargets = new BlockEntity[OUTPUT_FACE_COUNT];
+    private final IItemHandler[] outputHandlers = new IItemHandler[OUTPUT_FACE_COUNT];
+    private final boolean[] outputResolved = new boolean[OUTPUT_FACE_COUNT];
+    private final boolean[] outputBlocked = new boolean[OUTPUT_FACE_COUNT];
+    private final int[] outputBackoffTicks = new int[OUTPUT_FACE_COUNT];
+    private final long[] outputBackoffUntil = new long[OUTPUT_FACE_COUNT];
 
     private LazyOptional<IItemHandler> unsidedCapability = LazyOptional.empty();
     private final Map<Direction, LazyOptional<IItemHandler>> sidedCapabilities = new EnumMap<>(Direction.class);
+    private boolean capabilitiesValid = true;
 
     public SplitterBlockEntity(BlockPos pos, BlockState blockState) {
         super(Satiscraftory.SPLITTER_BLOCK_ENTITY.get(), pos, blockState);
-        inventory = createInventory();
-        rebuildCapabilities();
+        Arrays.fill(buffer, ItemStack.EMPTY);
+        Arrays.fill(outputBackoffUntil, Long.MIN_VALUE);
+        Arrays.fill(filters, OutputFilter.NONE);
+        routes.defaultReturnValue(UNROUTED);
+    }
+
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        if (event.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+            tagGeneration++;
+        }
+    }
+
+    @Override
+    public void onLoad() {
+        super.onLoad();
+        if (level instanceof ServerLevel serverLevel) {
+            long maxId = 0L;
+            for (long id : bufferIds) {
+                maxId = Math.max(maxId, id);
+            }
+            if (maxId > 0L) {
+                ConveyorItemIdAllocator.get(serverLevel).reserveAbove(maxId);
+            }
+        }
+        LogisticsTickScheduler.register(this);
     }
 
-    public static void serverTick(Level level, BlockPos pos, BlockState state, SplitterBlockEntity splitter) {
-        splitter.tickServer(state);
+    @Override
+    public void setBlockState(BlockState state) {
+        boolean rotated = state != getBlockState();
+        super.setBlockState(state);
+        if (rotated && level instanceof ServerLevel) {
+            // Facing is the only property, so any change points the block at other neighbours.
+            LogisticsTickScheduler.invalidate(this);
+        }
+    }
+
+    @Override
+    public void setRemoved() {
+        if (level instanceof ServerLevel) {
+            LogisticsTickScheduler.unregister(this);
+        }
+        super.setRemoved();
+    }
+
+    @Override
+    public long tickScheduled(long gameTime) {
+        tickServer(getBlockState());
+        return getNextTick(gameTime);
+    }
+
+    // Sleeps while the head has nowhere to go; new items, freed space and neighbour changes wake it.
+    private long getNextTick(long gameTime) {
+        if (bufferCount == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        int routeMask = getRouteMask(buffer[bufferStart].getItem()) | overflowMask;
+        long next = Long.MAX_VALUE;
+        for (int outputIndex = 0; outputIndex < OUTPUT_FACE_COUNT; outputIndex++) {
+            if ((routeMask & (1 << outputIndex)) == 0) {
+                continue;
+            }
+            if (outputBackoffUntil[outputIndex] <= gameTime) {
+                return gameTime + 1;
+            }
+            next = Math.min(next, outputBackoffUntil[outputIndex]);
+        }
+        return next;
+    }
+
+    @Override
+    public void collectDownstream(LongArrayList positions) {
+        for (Direction outputSide : getOutputOrder(getInputSide(getBlockState()))) {
+            positions.add(worldPosition.relative(outputSide).asLong());
+        }
     }
 
     private void tickServer(BlockState state) {
-        ItemStack bufferStack = inventory.getStackInSlot(BUFFER_SLOT);
-        if (bufferStack.isEmpty()) {
+        if (bufferCount == 0) {
             return;
         }
 
-        Direction inputSide = getInputSide(state);
-        Direction[] outputOrder = getOutputOrder(inputSide);
+        Direction[] outputOrder = getOutputOrder(getInputSide(state));
+        long now = level == null ? 0L : level.getGameTime();
+        Arrays.fill(outputResolved, false);
+        for (int outputIndex = 0; outputIndex < OUTPUT_FACE_COUNT; outputIndex++) {
+            outputBlocked[outputIndex] = now < outputBackoffUntil[outputIndex];
+        }
+
+        int moved = 0;
+        while (bufferCount > 0 && moved < BUFFER_CAPACITY) {
+            int routeMask = getRouteMask(buffer[bufferStart].getItem());
+            int outputIndex = sendHead(outputOrder, routeMask, now);
+            if (outputIndex < 0 && (overflowMask & ~routeMask) != 0) {
+                outputIndex = sendHead(outputOrder, overflowMask & ~routeMask, now);
+            }
+            if (outputIndex < 0) {
+                break;
+            }
+
+            popHead();
+            nextOutputIndex = (outputIndex + 1) % OUTPUT_FACE_COUNT;
+            moved++;
+        }
 
-        ItemStack single = bufferStack.copy();
-        single.setCount(1);
+        Arrays.fill(outputTargets, null);
+        Arrays.fill(outputHandlers, null);
+        if (moved > 0) {
+            DirtyBlockEntityTracker.markDirty(this);
+        }
+    }
 
+    // Tries the outputs in routeMask round-robin from nextOutputIndex; returns the one that took the head.
+    private int sendHead(Direction[] outputOrder, int routeMask, long now) {
         for (int attempt = 0; attempt < OUTPUT_FACE_COUNT; attempt++) {
             int outputIndex = Math.floorMod(nextOutputIndex + attempt, OUTPUT_FACE_COUNT);
-            Direction outputSide = outputOrder[outputIndex];
-            IItemHandler outputHandler = getOutputHandler(outputSide);
-            if (outputHandler == null) {
+            if ((routeMask & (1 << outputIndex)) == 0 || outputBlocked[outputIndex]) {
                 continue;
             }
 
-            if (!insertIntoHandler(outputHandler, single, true).isEmpty()) {
-                continue;
+            if (transferHeadTo(outputIndex, outputOrder[outputIndex])) {
+                outputBackoffTicks[outputIndex] = 0;
+                return outputIndex;
             }
 
-            if (!insertIntoHandler(outputHandler, single, false).isEmpty()) {
+            outputBlocked[outputIndex] = true;
+            backOffOutput(outputIndex, now);
+        }
+        return -1;
+    }
+
+    // A full output waits longer each time until it reports space or a neighbour changes.
+    private void backOffOutput(int outputIndex, long now) {
+        outputBackoffTicks[outputIndex] = Math.min(OUTPUT_BLOCKED_BACKOFF_MAX_TICKS,
+                Math.max(1, outputBackoffTicks[outputIndex] * 2));
+        outputBackoffUntil[outputIndex] = now + outputBackoffTicks[outputIndex];
+    }
+
+    // Sends an arriving item straight onto the next downstream conveyor in the same call, so a
+    // junction adds no tick of latency. Only an empty buffer passes through, which keeps order.
+    private boolean tryPassThrough(ItemStack stack, long itemId) {
+        if (bufferCount > 0 || level == null) {
+            return false;
+        }
+
+        Direction[] outputOrder = getOutputOrder(getInputSide(getBlockState()));
+        long now = level.getGameTime();
+        int routeMask = getRouteMask(stack.getItem());
+        int outputIndex = passThroughTo(outputOrder, routeMask, stack, itemId, now);
+        if (outputIndex < 0 && (overflowMask & ~routeMask) != 0) {
+            outputIndex = passThroughTo(outputOrder, overflowMask & ~routeMask, stack, itemId, now);
+        }
+        if (outputIndex < 0) {
+            return false;
+        }
+
+        nextOutputIndex = (outputIndex + 1) % OUTPUT_FACE_COUNT;
+        return true;
+    }
+
+    private int passThroughTo(Direction[] outputOrder, int routeMask, ItemStack stack, long itemId, long now) {
+        for (int attempt = 0; attempt < OUTPUT_FACE_COUNT; attempt++) {
+            int outputIndex = Math.floorMod(nextOutputIndex + attempt, OUTPUT_FACE_COUNT);
+            if ((routeMask & (1 << outputIndex)) == 0 || now < outputBackoffUntil[outputIndex]) {
                 continue;
             }
 
-            suppressDirtyCallbacks = true;
-            inventory.setStackInSlot(BUFFER_SLOT, ItemStack.EMPTY);
-            suppressDirtyCallbacks = false;
-            nextOutputIndex = (outputIndex + 1) % OUTPUT_FACE_COUNT;
-            setChanged();
-            return;
+            Direction outputSide = outputOrder[outputIndex];
+            // Other targets are left to the tick so the round-robin turn is not skipped.
+            if (!(getOutputTarget(outputSide) instanceof ConveyorBlockEntity conveyor)) {
+                return -1;
+            }
+
+            if (conveyor.acceptItem(outputSide.getOpposite(), stack, itemId, false)) {
+                outputBackoffTicks[outputIndex] = 0;
+                return outputIndex;
+            }
+            backOffOutput(outputIndex, now);
         }
+        return -1;
     }
 
+    @Override
+    public void onDownstreamSpaceFreed(Direction side) {
+        wakeOutput(getOutputIndex(side));
+    }
+
+    public void onNeighborChanged(BlockPos neighborPos) {
+        for (Direction side : Direction.Plane.HORIZONTAL) {
+            if (worldPosition.relative(side).equals(neighborPos)) {
+                wakeOutput(getOutputIndex(side));
+                return;
+            }
+        }
+    }
+
+    private void wakeOutput(int outputIndex) {
+        if (outputIndex >= 0) {
+            outputBackoffTicks[outputIndex] = 0;
+            outputBackoffUntil[outputIndex] = Long.MIN_VALUE;
+            if (bufferCount > 0) {
+                LogisticsTickScheduler.wake(this);
+            }
+        }
+    }
+
+    private int getRouteMask(Item item) {
+        if (!filtered) {
+            return ALL_OUTPUTS;
+        }
+
+        if (routesTagGeneration != tagGeneration) {
+            // Tag filters may match different items after a reload.
+            routes.clear();
+            routesTagGeneration = tagGeneration;
+        }
+
+        int mask = routes.getInt(item);
+        if (mask == UNROUTED) {
+            mask = compileRoute(item);
+            routes.put(item, mask);
+        }
+        return mask;
+    }
+
+    // Items matching an item or tag filter go there; anything else goes to "any", then to overflow.
+    // An item with no route at all waits at the head, asleep, until the filters change.
+    private int compileRoute(Item item) {
+        int mask = 0;
+        for (int outputIndex = 0; outputIndex < OUTPUT_FACE_COUNT; outputIndex++) {
+            if (filters[outputIndex].matches(item)) {
+                mask |= 1 << outputIndex;
+            }
+        }
+        if (mask == 0) {
+            mask = anyMask;
+        }
+        return mask == 0 ? overflowMask : mask;
+    }
+
+    private void onFiltersChanged() {
+        routes.clear();
+        Arrays.fill(outputBackoffTicks, 0);
+        Arrays.fill(outputBackoffUntil, Long.MIN_VALUE);
+        filtered = false;
+        anyMask = 0;
+        overflowMask = 0;
+        for (int outputIndex = 0; outputIndex < OUTPUT_FACE_COUNT; outputIndex++) {
+            byte type = filters[outputIndex].type;
+            filtered |= type != FILTER_NONE;
+            if (type == FILTER_ANY) {
+                anyMask |= 1 << outputIndex;
+            } else if (type == FILTER_OVERFLOW) {
+                overflowMask |= 1 << outputIndex;
+            }
+        }
+    }
+
+    // True when some items match no output and no "any" or overflow output takes them instead.
+    public boolean holdsUnmatchedItems() {
+        return filtered && anyMask == 0 && overflowMask == 0;
+    }
+
+    // Held item: filter on it, then on each of its tags in turn. Empty hand: none, any, overflow.
     @Nullable
-    private IItemHandler getOutputHandler(Direction outputSide) {
-        if (level == null) {
+    public Component configureFilter(Direction face, ItemStack held) {
+        int outputIndex = getOutputIndex(face);
+        if (outputIndex < 0) {
             return null;
         }
 
-        BlockEntity target = level.getBlockEntity(worldPosition.relative(outputSide));
-        if (target == null || target == this) {
-            return null;
+        OutputFilter current = filters[outputIndex];
+        OutputFilter next;
+        if (held.isEmpty()) {
+            next = current.type == FILTER_ANY ? OutputFilter.OVERFLOW
+                    : current.type == FILTER_OVERFLOW ? OutputFilter.NONE
+                    : OutputFilter.ANY;
+        } else {
+            next = nextFilterFor(current, held);
         }
 
+        filters[outputIndex] = next;
+        onFiltersChanged();
+        DirtyBlockEntityTracker.markDirty(this);
+        LogisticsTickScheduler.wake(this);
+        return next.describe();
+    }
+
+    private static OutputFilter nextFilterFor(OutputFilter current, ItemStack held) {
+        Item item = held.getItem();
+        List<TagKey<Item>> tags = held.getTags()
+                .sorted(Comparator.comparing(tag -> tag.location().toString()))
+                .toList();
+        if (current.type == FILTER_ITEM && current.item == item) {
+            return tags.isEmpty() ? current : OutputFilter.ofTag(tags.get(0));
+        }
+        if (current.type == FILTER_TAG) {
+            int index = tags.indexOf(current.tag);
+            if (index >= 0 && index + 1 < tags.size()) {
+                return OutputFilter.ofTag(tags.get(index + 1));
+            }
+        }
+        return OutputFilter.ofItem(item);
+    }
+
+    private int getOutputIndex(Direction face) {
+        Direction[] outputOrder = getOutputOrder(getInputSide(getBlockState()));
+        for (int outputIndex = 0; outputIndex < OUTPUT_FACE_COUNT; outputIndex++) {
+            if (outputOrder[outputIndex] == face) {
+                return outputIndex;
+            }
+        }
+        return -1;
+    }
+
+    private boolean transferHeadTo(int outputIndex, Direction outputSide) {
+        if (!outputResolved[outputIndex]) {
+            outputResolved[outputIndex] = true;
+            BlockEntity target = getOutputTarget(outputSide);
+            outputTargets[outputIndex] = target;
+            outputHandlers[outputIndex] = target == null || target instanceof ConveyorItemHandoff
+                    ? null
+                    : getItemHandler(target, outputSide.getOpposite());
+        }
+
+        BlockEntity target = outputTargets[outputIndex];
+        if (target == null) {
+            return false;
+        }
+
+        // The buffered stack is owned here; on success it moves to the target as is.
+        ItemStack single = buffer[bufferStart];
         Direction sideOnTarget = outputSide.getOpposite();
+        if (target instanceof ConveyorItemHandoff handoff) {
+            return handoff.acceptItem(sideOnTarget, single, bufferIds[bufferStart], false);
+        }
+
+        IItemHandler outputHandler = outputHandlers[outputIndex];
+        if (outputHandler == null) {
+            return false;
+        }
+
+        if (!insertIntoHandler(outputHandler, single, true).isEmpty()) {
+            return false;
+        }
+        return insertIntoHandler(outputHandler, single, false).isEmpty();
+    }
+
+    @Nullable
+    private BlockEntity getOutputTarget(Direction outputSide) {
+        if (level == null) {
+            return null;
+        }
+
+        BlockEntity target = level.getBlockEntity(worldPosition.relative(outputSide));
+        return target == this ? null : target;
+    }
+
+    @Nullable
+    private static IItemHandler getItemHandler(BlockEntity target, Direction sideOnTarget) {
         LazyOptional<IItemHandler> sidedHandler = target.getCapability(ForgeCapabilities.ITEM_HANDLER, sideOnTarget);
         if (sidedHandler.isPresent()) {
             return sidedHandler.orElse(null);
@@ -102,51 +477,128 @@ public class SplitterBlockEntity extends BlockEntity {
     }
 
     private static ItemStack insertIntoHandler(IItemHandler handler, ItemStack stack, boolean simulate) {
-        ItemStack remaining = stack.copy();
+        ItemStack remaining = stack;
         for (int slot = 0; slot < handler.getSlots() && !remaining.isEmpty(); slot++) {
             remaining = handler.insertItem(slot, remaining, simulate);
         }
         return remaining;
     }
 
-    public void dropContents(Level level, BlockPos pos) {
-        ItemStack stack = inventory.getStackInSlot(BUFFER_SLOT);
-        if (stack.isEmpty()) {
-            return;
+    private ItemStack peekHead() {
+        return bufferCount == 0 ? ItemStack.EMPTY : buffer[bufferStart];
+    }
+
+    private void pushTail(ItemStack single, long itemId) {
+        int index = (bufferStart + bufferCount) % BUFFER_CAPACITY;
+        buffer[index] = single;
+        bufferIds[index] = Math.max(0L, itemId);
+        bufferCount++;
+    }
+
+    private ItemStack popHead() {
+        ItemStack head = buffer[bufferStart];
+        buffer[bufferStart] = ItemStack.EMPTY;
+        bufferIds[bufferStart] = 0L;
+        bufferStart = (bufferStart + 1) % BUFFER_CAPACITY;
+        bufferCount--;
+        return head;
+    }
+
+    @Override
+    public boolean acceptItem(Direction side, ItemStack stack, long itemId, boolean simulate) {
+        if (stack.isEmpty() || !canInsertFromSide(side) || bufferCount >= BUFFER_CAPACITY) {
+            return false;
+        }
+
+        if (!simulate) {
+            if (!tryPassThrough(stack, itemId)) {
+                pushTail(stack.copyWithCount(1), itemId);
+                LogisticsTickScheduler.wake(this);
+            }
+            DirtyBlockEntityTracker.markDirty(this);
+        }
+        return true;
+    }
+
+    @Override
+    public long peekItemId(Direction side) {
+        if (!canExtractFromSide(side) || bufferCount == 0) {
+            return 0L;
         }
+        return bufferIds[bufferStart];
+    }
 
-        Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), stack);
-        suppressDirtyCallbacks = true;
-        inventory.setStackInSlot(BUFFER_SLOT, ItemStack.EMPTY);
-        suppressDirtyCallbacks = false;
+    public void dropContents(Level level, BlockPos pos) {
+        while (bufferCount > 0) {
+            Containers.dropItemStack(level, pos.getX(), pos.getY(), pos.getZ(), popHead());
+        }
     }
 
     @Override
     protected void saveAdditional(CompoundTag tag) {
         super.saveAdditional(tag);
-        tag.put(INVENTORY_TAG, inventory.serializeNBT());
+        ListTag items = new ListTag();
+        long[] ids = new long[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            int index = (bufferStart + i) % BUFFER_CAPACITY;
+            items.add(buffer[index].save(new CompoundTag()));
+            ids[i] = bufferIds[index];
+        }
+        tag.put(ITEMS_TAG, items);
+        tag.putLongArray(ITEM_IDS_TAG, ids);
         tag.putInt(NEXT_OUTPUT_INDEX_TAG, Math.floorMod(nextOutputIndex, OUTPUT_FACE_COUNT));
+        if (filtered) {
+            ListTag filterList = new ListTag();
+            for (OutputFilter filter : filters) {
+                filterList.add(filter.save());
+            }
+            tag.put(FILTERS_TAG, filterList);
+        }
     }
 
     @Override
     public void load(CompoundTag tag) {
         super.load(tag);
 
-        suppressDirtyCallbacks = true;
-        inventory = createInventory();
-        if (tag.contains(INVENTORY_TAG, Tag.TAG_COMPOUND)) {
-            inventory.deserializeNBT(tag.getCompound(INVENTORY_TAG));
+        Arrays.fill(buffer, ItemStack.EMPTY);
+        Arrays.fill(bufferIds, 0L);
+        bufferStart = 0;
+        bufferCount = 0;
+        if (tag.contains(ITEMS_TAG, Tag.TAG_LIST)) {
+            ListTag items = tag.getList(ITEMS_TAG, Tag.TAG_COMPOUND);
+            long[] ids = tag.getLongArray(ITEM_IDS_TAG);
+            for (int i = 0; i < items.size() && bufferCount < BUFFER_CAPACITY; i++) {
+                ItemStack stack = ItemStack.of(items.getCompound(i));
+                if (!stack.isEmpty()) {
+                    pushTail(stack.copyWithCount(1), i < ids.length ? ids[i] : 0L);
+                }
+            }
+        } else if (tag.contains(INVENTORY_TAG, Tag.TAG_COMPOUND)) {
+            // Older splitters kept one item in a single-slot ItemStackHandler.
+            ListTag items = tag.getCompound(INVENTORY_TAG).getList(INVENTORY_ITEMS_TAG, Tag.TAG_COMPOUND);
+            for (int i = 0; i < items.size() && bufferCount == 0; i++) {
+                ItemStack stack = ItemStack.of(items.getCompound(i));
+                if (!stack.isEmpty()) {
+                    pushTail(stack.copyWithCount(1), tag.getLong(ITEM_ID_TAG));
+                }
+            }
         }
-        clampInventoryToSingleItem();
-        suppressDirtyCallbacks = false;
 
         int storedOutputIndex = tag.contains(NEXT_OUTPUT_INDEX_TAG, Tag.TAG_INT) ? tag.getInt(NEXT_OUTPUT_INDEX_TAG) : 0;
         nextOutputIndex = Math.floorMod(storedOutputIndex, OUTPUT_FACE_COUNT);
+
+        Arrays.fill(filters, OutputFilter.NONE);
+        ListTag filterList = tag.getList(FILTERS_TAG, Tag.TAG_COMPOUND);
+        for (int i = 0; i < filterList.size() && i < OUTPUT_FACE_COUNT; i++) {
+            filters[i] = OutputFilter.load(filterList.getCompound(i));
+        }
+        onFiltersChanged();
     }
 
     @Override
     public void invalidateCaps() {
         super.invalidateCaps();
+        capabilitiesValid = false;
         unsidedCapability.invalidate();
         for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
             capability.invalidate();
@@ -157,66 +609,24 @@ public class SplitterBlockEntity extends BlockEntity {
     @Override
     public void reviveCaps() {
         super.reviveCaps();
-        rebuildCapabilities();
+        capabilitiesValid = true;
     }
 
     @Override
     public <T> LazyOptional<T> getCapability(Capability<T> cap, @Nullable Direction side) {
-        if (cap == ForgeCapabilities.ITEM_HANDLER) {
+        if (cap == ForgeCapabilities.ITEM_HANDLER && capabilitiesValid) {
             if (side == null) {
+                if (!unsidedCapability.isPresent()) {
+                    unsidedCapability = LazyOptional.of(() -> new SplitterInventoryHandler(null));
+                }
                 return unsidedCapability.cast();
             }
-            LazyOptional<IItemHandler> sided = sidedCapabilities.get(side);
-            if (sided != null) {
-                return sided.cast();
-            }
-            return unsidedCapability.cast();
+            return sidedCapabilities.computeIfAbsent(side,
+                    direction -> LazyOptional.of(() -> new SplitterInventoryHandler(direction))).cast();
         }
         return super.getCapability(cap, side);
     }
 
-    private void rebuildCapabilities() {
-        if (unsidedCapability.isPresent()) {
-            unsidedCapability.invalidate();
-        }
-        for (LazyOptional<IItemHandler> capability : sidedCapabilities.values()) {
-            capability.invalidate();
-        }
-        sidedCapabilities.clear();
-
-        unsidedCapability = LazyOptional.of(() -> new SplitterInventoryHandler(null));
-        for (Direction direction : Direction.values()) {
-            sidedCapabilities.put(direction, LazyOptional.of(() -> new SplitterInventoryHandler(direction)));
-        }
-    }
-
-    private ItemStackHandler createInventory() {
-        return new ItemStackHandler(1) {
-            @Override
-            public int getSlotLimit(int slot) {
-                return 1;
-            }
-
-            @Override
-            protected void onContentsChanged(int slot) {
-                if (!suppressDirtyCallbacks) {
-                    setChanged();
-                }
-            }
-        };
-    }
-
-    private void clampInventoryToSingleItem() {
-        ItemStack stack = inventory.getStackInSlot(BUFFER_SLOT);
-        if (stack.isEmpty()) {
-            return;
-        }
-
-        ItemStack single = stack.copy();
-        single.setCount(1);
-        inventory.setStackInSlot(BUFFER_SLOT, single);
-    }
-
     private static Direction getInputSide(BlockState state) {
         if (state.hasProperty(SplitterBlock.INPUT_FACING)) {
             return state.getValue(SplitterBlock.INPUT_FACING);
@@ -226,11 +636,7 @@ public class SplitterBlockEntity extends BlockEntity {
 
     private static Direction[] getOutputOrder(Direction inputSide) {
         Direction input = inputSide.getAxis().isHorizontal() ? inputSide : Direction.NORTH;
-        return new Direction[]{
-                input.getCounterClockWise(),
-                input.getOpposite(),
-                input.getClockWise()
-        };
+        return OUTPUT_ORDERS[input.get2DDataValue()];
     }
 
     private boolean canInsertFromSide(Direction side) {
@@ -253,24 +659,24 @@ public class SplitterBlockEntity extends BlockEntity {
             return stack;
         }
 
-        if (!inventory.getStackInSlot(BUFFER_SLOT).isEmpty()) {
+        int accepted = Math.min(stack.getCount(), BUFFER_CAPACITY - bufferCount);
+        if (accepted <= 0) {
             return stack;
         }
 
-        ItemStack single = stack.copy();
-        single.setCount(1);
-        ItemStack remainder = inventory.insertItem(BUFFER_SLOT, single, simulate);
-        if (!remainder.isEmpty()) {
-            return stack;
+        if (!simulate) {
+            for (int i = 0; i < accepted; i++) {
+                pushTail(stack.copyWithCount(1), 0L);
+            }
+            DirtyBlockEntityTracker.markDirty(this);
+            LogisticsTickScheduler.wake(this);
         }
 
-        ItemStack leftover = stack.copy();
-        leftover.shrink(1);
-        return leftover;
+        return stack.copyWithCount(stack.getCount() - accepted);
     }
 
     private ItemStack extractFromCapability(@Nullable Direction side, int slot, int amount, boolean simulate) {
-        if (amount <= 0 || slot != BUFFER_SLOT) {
+        if (amount <= 0 || slot != BUFFER_SLOT || bufferCount == 0) {
             return ItemStack.EMPTY;
         }
 
@@ -278,7 +684,81 @@ public class SplitterBlockEntity extends BlockEntity {
             return ItemStack.EMPTY;
         }
 
-        return inventory.extractItem(BUFFER_SLOT, 1, simulate);
+        if (simulate) {
+            return peekHead().copy();
+        }
+
+        ItemStack extracted = popHead();
+        DirtyBlockEntityTracker.markDirty(this);
+        return extracted;
+    }
+
+    private static final class OutputFilter {
+        private static final OutputFilter NONE = new OutputFilter(FILTER_NONE, null, null);
+        private static final OutputFilter ANY = new OutputFilter(FILTER_ANY, null, null);
+        private static final OutputFilter OVERFLOW = new OutputFilter(FILTER_OVERFLOW, null, null);
+
+        private final byte type;
+        @Nullable
+        private final Item item;
+        @Nullable
+        private final TagKey<Item> tag;
+
+        private OutputFilter(byte type, @Nullable Item item, @Nullable TagKey<Item> tag) {
+            this.type = type;
+            this.item = item;
+            this.tag = tag;
+        }
+
+        private static OutputFilter ofItem(Item item) {
+            return new OutputFilter(FILTER_ITEM, item, null);
+        }
+
+        private static OutputFilter ofTag(TagKey<Item> tag) {
+            return new OutputFilter(FILTER_TAG, null, tag);
+        }
+
+        @SuppressWarnings("deprecation")
+        private boolean matches(Item item) {
+            if (type == FILTER_ITEM) {
+                return this.item == item;
+            }
+            return type == FILTER_TAG && tag != null && item.builtInRegistryHolder().is(tag);
+        }
+
+        private Component describe() {
+            return switch (type) {
+                case FILTER_ITEM -> Component.translatable("filter.satiscraftory.item", item.getDescription());
+                case FILTER_TAG -> Component.translatable("filter.satiscraftory.tag", tag.location().toString());
+                case FILTER_ANY -> Component.translatable("filter.satiscraftory.any");
+                case FILTER_OVERFLOW -> Component.translatable("filter.satiscraftory.overflow");
+                default -> Component.translatable("filter.satiscraftory.none");
+            };
+        }
+
+        private CompoundTag save() {
+            CompoundTag filterTag = new CompoundTag();
+            filterTag.putByte(FILTER_TYPE_TAG, type);
+            if (type == FILTER_ITEM) {
+                filterTag.putString(FILTER_VALUE_TAG, String.valueOf(ForgeRegistries.ITEMS.getKey(item)));
+            } else if (type == FILTER_TAG) {
+                filterTag.putString(FILTER_VALUE_TAG, tag.location().toString());
+            }
+            return filterTag;
+        }
+
+        private static OutputFilter load(CompoundTag filterTag) {
+            byte type = filterTag.getByte(FILTER_TYPE_TAG);
+            ResourceLocation value = ResourceLocation.tryParse(filterTag.getString(FILTER_VALUE_TAG));
+            if (type == FILTER_ITEM && value != null) {
+                Item item = ForgeRegistries.ITEMS.getValue(value);
+                return item == null || item == Items.AIR ? NONE : ofItem(item);
+            }
+            if (type == FILTER_TAG && value != null) {
+                return ofTag(TagKey.create(Registries.ITEM, value));
+            }
+            return type == FILTER_ANY ? ANY : type == FILTER_OVERFLOW ? OVERFLOW : NONE;
+        }
     }
 
     private final class SplitterInventoryHandler implements IItemHandler {
@@ -299,7 +779,7 @@ public class SplitterBlockEntity extends BlockEntity {
             if (slot != BUFFER_SLOT) {
                 return ItemStack.EMPTY;
             }
-            return inventory.getStackInSlot(BUFFER_SLOT);
+            return peekHead();
         }
 
         @Override
@@ -314,7 +794,7 @@ public class SplitterBlockEntity extends BlockEntity {
 
         @Override
         public int getSlotLimit(int slot) {
-            return 1;
+            return BUFFER_CAPACITY;
         }
 
         @Override
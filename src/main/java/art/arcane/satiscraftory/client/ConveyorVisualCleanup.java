@@ -0,0 +1,29 @@
+package art.arcane.satiscraftory.client;
+
+import art.arcane.satiscraftory.Satiscraftory;
+import art.arcane.satiscraftory.block.entity.ConveyorBlockEntity;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.ClientPlayerNetworkEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+// Handed-off belt visuals are tracked across belts of one client level; they are dropped with it
+// so dimension changes and disconnects do not keep old entities alive.
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE, value = Dist.CLIENT)
+public final class ConveyorVisualCleanup {
+    private ConveyorVisualCleanup() {
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel().isClientSide()) {
+            ConveyorBlockEntity.clearClientVisualHandoffs();
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLoggingOut(ClientPlayerNetworkEvent.LoggingOut event) {
+        ConveyorBlockEntity.clearClientVisualHandoffs();
+    }
+}
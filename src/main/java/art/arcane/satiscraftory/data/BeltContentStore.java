@@ -0,0 +1,284 @@
+package art.arcane.satiscraftory.data;
+
+import art.arcane.satiscraftory.Satiscraftory;
+import com.mojang.logging.LogUtils;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.dimension.DimensionType;
+import net.minecraft.world.level.storage.LevelResource;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import org.slf4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Per-dimension conveyor contents kept outside chunk data. Changes are appended to a log on level
+// save and synced to disk, and the log is rewritten from the live entries once it has grown well
+// past them. Chunks are saved at their own pace, so a belt leaves its contents out of the chunk
+// only while the log already holds exactly those contents on disk, and the chunk names the
+// generation of that record. The record before it is kept too, so a chunk that had not reached
+// the disk yet when the log moved on still finds what it names after a crash.
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class BeltContentStore {
+    public static final int NOT_DURABLE = -1;
+    // Chunks written before records carried a generation take the latest one.
+    public static final int ANY_GENERATION = -2;
+    private static final Logger LOGGER = LogUtils.getLogger();
+    private static final String FILE_NAME = Satiscraftory.MODID + "_belts.log";
+    private static final byte RECORD_PUT = 1;
+    private static final byte RECORD_REMOVE = 2;
+    private static final byte RECORD_PUT_GENERATION = 3;
+    private static final int COMPACTION_MIN_RECORDS = 1024;
+    private static final Map<ServerLevel, BeltContentStore> STORES = new IdentityHashMap<>();
+
+    private final Path file;
+    private final Long2ObjectOpenHashMap<Record> entries = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<CompoundTag> pending = new Long2ObjectOpenHashMap<>();
+    // Removals wait for one more save, so the chunk without the belt is on disk before the log
+    // forgets its contents.
+    private LongOpenHashSet requestedRemovals = new LongOpenHashSet();
+    private LongOpenHashSet dueRemovals = new LongOpenHashSet();
+    private int generation;
+    private int logRecords;
+
+    private BeltContentStore(Path file) {
+        this.file = file;
+    }
+
+    public static BeltContentStore get(ServerLevel level) {
+        return STORES.computeIfAbsent(level, BeltContentStore::open);
+    }
+
+    @Nullable
+    public CompoundTag read(BlockPos pos, int expectedGeneration) {
+        Record record = entries.get(pos.asLong());
+        if (record == null) {
+            return null;
+        }
+        if (expectedGeneration == ANY_GENERATION || record.generation == expectedGeneration) {
+            return record.contents;
+        }
+        if (record.previous != null && record.previous.generation == expectedGeneration) {
+            return record.previous.contents;
+        }
+
+        LOGGER.warn("No conveyor contents of generation {} for {} in {}, using generation {}",
+                expectedGeneration, pos, file, record.generation);
+        return record.contents;
+    }
+
+    // Returns the generation of the record that already holds these contents on disk, or
+    // NOT_DURABLE after queueing them for the next save.
+    public int write(BlockPos pos, CompoundTag contents) {
+        long key = pos.asLong();
+        requestedRemovals.remove(key);
+        dueRemovals.remove(key);
+        Record record = entries.get(key);
+        if (record != null && record.contents.equals(contents)) {
+            pending.remove(key);
+            return record.generation;
+        }
+
+        pending.put(key, contents);
+        return NOT_DURABLE;
+    }
+
+    public void remove(BlockPos pos) {
+        long key = pos.asLong();
+        pending.remove(key);
+        if (entries.containsKey(key)) {
+            requestedRemovals.add(key);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelSave(LevelEvent.Save event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            BeltContentStore store = STORES.get(serverLevel);
+            if (store != null) {
+                store.flush();
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            BeltContentStore store = STORES.remove(serverLevel);
+            if (store != null) {
+                store.flush();
+            }
+        }
+    }
+
+    private static BeltContentStore open(ServerLevel level) {
+        Path folder = DimensionType.getStorageFolder(level.dimension(), level.getServer().getWorldPath(LevelResource.ROOT));
+        BeltContentStore store = new BeltContentStore(folder.resolve("data").resolve(FILE_NAME));
+        store.readLog();
+        return store;
+    }
+
+    private void readLog() {
+        if (!Files.exists(file)) {
+            return;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                byte type;
+                try {
+                    type = input.readByte();
+                } catch (EOFException end) {
+                    break;
+                }
+
+                long key = input.readLong();
+                if (type == RECORD_PUT || type == RECORD_PUT_GENERATION) {
+                    int recordGeneration = type == RECORD_PUT ? 0 : input.readInt();
+                    entries.put(key, new Record(recordGeneration, NbtIo.read(input), entries.get(key)));
+                    generation = Math.max(generation, recordGeneration);
+                } else if (type == RECORD_REMOVE) {
+                    entries.remove(key);
+                } else {
+                    LOGGER.warn("Stopped reading {} at unknown record type {}", file, type);
+                    break;
+                }
+                logRecords++;
+            }
+        } catch (EOFException truncated) {
+            // A crash mid-append leaves a partial last record; everything before it is intact.
+            LOGGER.warn("Ignoring truncated record at the end of {}", file);
+        } catch (IOException exception) {
+            LOGGER.error("Failed to read conveyor contents from {}", file, exception);
+        }
+    }
+
+    private void flush() {
+        int changes = pending.size() + dueRemovals.size();
+        if (changes > 0) {
+            int flushGeneration = generation + 1;
+            try {
+                Files.createDirectories(file.getParent());
+                if (logRecords + changes > Math.max(COMPACTION_MIN_RECORDS, entries.size() * 2)) {
+                    compact(flushGeneration);
+                } else {
+                    append(flushGeneration);
+                }
+            } catch (IOException exception) {
+                // Nothing is applied, so belts keep saving their contents inline until a flush succeeds.
+                LOGGER.error("Failed to write conveyor contents to {}", file, exception);
+                return;
+            }
+
+            generation = flushGeneration;
+            for (Long2ObjectMap.Entry<CompoundTag> change : pending.long2ObjectEntrySet()) {
+                long key = change.getLongKey();
+                entries.put(key, new Record(flushGeneration, change.getValue(), entries.get(key)));
+            }
+            LongIterator removals = dueRemovals.iterator();
+            while (removals.hasNext()) {
+                entries.remove(removals.nextLong());
+            }
+            pending.clear();
+        }
+
+        LongOpenHashSet emptied = dueRemovals;
+        emptied.clear();
+        dueRemovals = requestedRemovals;
+        requestedRemovals = emptied;
+    }
+
+    private void append(int flushGeneration) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (Long2ObjectMap.Entry<CompoundTag> change : pending.long2ObjectEntrySet()) {
+                writePut(output, change.getLongKey(), flushGeneration, change.getValue());
+            }
+            LongIterator removals = dueRemovals.iterator();
+            while (removals.hasNext()) {
+                output.writeByte(RECORD_REMOVE);
+                output.writeLong(removals.nextLong());
+            }
+            output.flush();
+            channel.force(true);
+        }
+        logRecords += pending.size() + dueRemovals.size();
+    }
+
+    // Writes the entries as they stand after this flush, each with the record before it.
+    private void compact(int flushGeneration) throws IOException {
+        Path temporary = file.resolveSibling(FILE_NAME + ".tmp");
+        int written = 0;
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (Long2ObjectMap.Entry<Record> entry : entries.long2ObjectEntrySet()) {
+                long key = entry.getLongKey();
+                if (dueRemovals.contains(key)) {
+                    continue;
+                }
+
+                Record record = entry.getValue();
+                if (!pending.containsKey(key) && record.previous != null) {
+                    writePut(output, key, record.previous.generation, record.previous.contents);
+                    written++;
+                }
+                writePut(output, key, record.generation, record.contents);
+                written++;
+            }
+            for (Long2ObjectMap.Entry<CompoundTag> change : pending.long2ObjectEntrySet()) {
+                writePut(output, change.getLongKey(), flushGeneration, change.getValue());
+                written++;
+            }
+            output.flush();
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logRecords = written;
+    }
+
+    private static void writePut(DataOutputStream output, long key, int recordGeneration, CompoundTag contents) throws IOException {
+        output.writeByte(RECORD_PUT_GENERATION);
+        output.writeLong(key);
+        output.writeInt(recordGeneration);
+        NbtIo.write(contents, output);
+    }
+
+    private static final class Record {
+        private final int generation;
+        private final CompoundTag contents;
+        @Nullable
+        private final Record previous;
+
+        private Record(int generation, CompoundTag contents, @Nullable Record latest) {
+            this.generation = generation;
+            this.contents = contents;
+            // One older record is enough: chunks reach the disk long before the next save.
+            this.previous = latest == null || latest.previous == null
+                    ? latest
+                    : new Record(latest.generation, latest.contents, null);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package art.arcane.satiscraftory.data;
+
+import art.arcane.satiscraftory.Satiscraftory;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.saveddata.SavedData;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConveyorItemIdAllocator extends SavedData {
+    private static final String DATA_NAME = Satiscraftory.MODID + "_item_ids";
+    private static final String RESERVED_TAG = "reserved";
+    // Only the reservation ceiling is persisted, so ids are never reused after a restart without
+    // a scan of every belt. Unused ids of the last block are simply skipped.
+    private static final long RESERVATION_BLOCK = 4096L;
+
+    private final AtomicLong nextId;
+    private final AtomicLong reservedUntil;
+
+    private ConveyorItemIdAllocator() {
+        this(1L);
+    }
+
+    private ConveyorItemIdAllocator(long firstId) {
+        long start = Math.max(1L, firstId);
+        nextId = new AtomicLong(start);
+        reservedUntil = new AtomicLong(start);
+    }
+
+    public static ConveyorItemIdAllocator get(ServerLevel level) {
+        return level.getDataStorage().computeIfAbsent(ConveyorItemIdAllocator::load, ConveyorItemIdAllocator::new, DATA_NAME);
+    }
+
+    private static ConveyorItemIdAllocator load(CompoundTag tag) {
+        return new ConveyorItemIdAllocator(tag.getLong(RESERVED_TAG));
+    }
+
+    public long allocate() {
+        long id = nextId.getAndIncrement();
+        if (id >= reservedUntil.get()) {
+            reservedUntil.accumulateAndGet(id + RESERVATION_BLOCK, Math::max);
+            setDirty();
+        }
+        return id;
+    }
+
+    // Worlds saved before the ceiling was persisted still hold ids minted by the old counter, so
+    // every loaded id pushes the counter past itself before it can be handed out again.
+    public void reserveAbove(long id) {
+        long next = nextId.accumulateAndGet(id + 1L, Math::max);
+        if (next > reservedUntil.get()) {
+            reservedUntil.accumulateAndGet(next + RESERVATION_BLOCK, Math::max);
+            setDirty();
+        }
+    }
+
+    @Override
+    public CompoundTag save(CompoundTag tag) {
+        tag.putLong(RESERVED_TAG, Math.max(reservedUntil.get(), nextId.get()));
+        return tag;
+    }
+}
@@ -0,0 +1,71 @@
+package art.arcane.satiscraftory.logistics;
+
+import art.arcane.satiscraftory.Satiscraftory;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Collects block entities that changed during a server tick so setChanged() and client syncs run
+// once per block entity at tick end instead of on every item movement.
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class DirtyBlockEntityTracker {
+    private static final Map<Level, ReferenceLinkedOpenHashSet<BlockEntity>> DIRTY = new IdentityHashMap<>();
+
+    private DirtyBlockEntityTracker() {
+    }
+
+    public interface Flushable {
+        void flushDirty();
+    }
+
+    public static void markDirty(BlockEntity blockEntity) {
+        Level level = blockEntity.getLevel();
+        if (level == null || level.isClientSide) {
+            blockEntity.setChanged();
+            return;
+        }
+
+        DIRTY.computeIfAbsent(level, ignored -> new ReferenceLinkedOpenHashSet<>()).add(blockEntity);
+    }
+
+    @SubscribeEvent
+    public static void onLevelTick(TickEvent.LevelTickEvent event) {
+        if (event.phase != TickEvent.Phase.END || event.level.isClientSide) {
+            return;
+        }
+
+        ReferenceLinkedOpenHashSet<BlockEntity> dirty = DIRTY.get(event.level);
+        if (dirty == null || dirty.isEmpty()) {
+            return;
+        }
+
+        // Flushing may mark entries again for the next tick, so drain a detached copy.
+        BlockEntity[] pending = dirty.toArray(new BlockEntity[0]);
+        dirty.clear();
+        for (BlockEntity blockEntity : pending) {
+            if (blockEntity.isRemoved()) {
+                continue;
+            }
+
+            if (blockEntity instanceof Flushable flushable) {
+                flushable.flushDirty();
+            } else {
+                blockEntity.setChanged();
+            }
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof Level level) {
+            DIRTY.remove(level);
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package art.arcane.satiscraftory.logistics;
+
+import art.arcane.satiscraftory.Satiscraftory;
+import art.arcane.satiscraftory.SatiscraftoryConfig;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.level.LevelEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+// Ticks conveyors, splitters and mergers downstream-first instead of in chunk order, so an item
+// released by a belt's head lands on a receiver that has already moved this tick. Nodes say when
+// they next need a tick and wait in a timer wheel until then, so slow belts are visited only when
+// a step is due. Ranks only have to agree within a connected group of nodes, so after a node is
+// added, removed or reconnected just the groups it touched are ranked again, on the next tick.
+// While the server's average tick time is over the configured threshold, nodes are visited only
+// every few ticks and catch up on the missed steps in one go.
+@Mod.EventBusSubscriber(modid = Satiscraftory.MODID, bus = Mod.EventBusSubscriber.Bus.FORGE)
+public final class LogisticsTickScheduler {
+    private static final Map<Level, LogisticsTickScheduler> SCHEDULERS = new IdentityHashMap<>();
+    private static final int WHEEL_SIZE = 64;
+    // Chunks that stop ticking are checked again this often instead of every tick.
+    private static final int INACTIVE_RECHECK_TICKS = 20;
+    // Coarse stepping ends only once the average drops this far below the threshold, so it does not flap.
+    private static final double DEGRADED_EXIT_RATIO = 0.8D;
+    private static final Comparator<Entry> BY_RANK = Comparator.comparingInt(entry -> entry.rank);
+    private static final Comparator<Entry> BY_POSITION = Comparator.comparingLong(entry -> entry.position);
+    private static final long[] NO_POSITIONS = new long[0];
+
+    private final Long2ObjectOpenHashMap<Entry> nodes = new Long2ObjectOpenHashMap<>();
+    // Senders per receiving position, including positions that hold no node yet.
+    private final Long2ObjectOpenHashMap<LongArrayList> upstream = new Long2ObjectOpenHashMap<>();
+    @SuppressWarnings("unchecked")
+    private final ObjectArrayList<Entry>[] wheel = new ObjectArrayList[WHEEL_SIZE];
+    // Newly registered or woken nodes, ticked on the next tick regardless of their slot.
+    private final ObjectArrayList<Entry> immediate = new ObjectArrayList<>();
+    private final ObjectArrayList<Entry> due = new ObjectArrayList<>();
+    // Positions whose group has to be ranked again, plus scratch lists for ranking it.
+    private final LongOpenHashSet dirty = new LongOpenHashSet();
+    private final ObjectArrayList<Entry> group = new ObjectArrayList<>();
+    private final ObjectArrayList<Entry> stack = new ObjectArrayList<>();
+    private int pass;
+    private boolean degraded;
+    private int stepInterval = 1;
+
+    private LogisticsTickScheduler() {
+        for (int slot = 0; slot < WHEEL_SIZE; slot++) {
+            wheel[slot] = new ObjectArrayList<>();
+        }
+    }
+
+    public interface Node {
+        // Returns the game time of the next tick this node needs; earlier wakes are harmless.
+        long tickScheduled(long gameTime);
+
+        // Positions this node hands items to; only positions holding other nodes affect the order.
+        void collectDownstream(LongArrayList positions);
+    }
+
+    public static <T extends BlockEntity & Node> void register(T blockEntity) {
+        Level level = blockEntity.getLevel();
+        if (!(level instanceof ServerLevel)) {
+            return;
+        }
+
+        LogisticsTickScheduler scheduler = SCHEDULERS.computeIfAbsent(level, ignored -> new LogisticsTickScheduler());
+        long key = blockEntity.getBlockPos().asLong();
+        Entry entry = new Entry(blockEntity, key);
+        Entry previous = scheduler.nodes.put(key, entry);
+        if (previous != null) {
+            previous.removed = true;
+            scheduler.unlink(previous);
+        }
+        scheduler.link(entry);
+        scheduler.immediate.add(entry);
+    }
+
+    public static void unregister(BlockEntity blockEntity) {
+        // Client block entities call in too; the map belongs to the server thread.
+        if (!(blockEntity.getLevel() instanceof ServerLevel level)) {
+            return;
+        }
+
+        LogisticsTickScheduler scheduler = SCHEDULERS.get(level);
+        if (scheduler == null) {
+            return;
+        }
+
+        long key = blockEntity.getBlockPos().asLong();
+        Entry entry = scheduler.nodes.get(key);
+        if (entry != null && entry.blockEntity == blockEntity) {
+            scheduler.nodes.remove(key);
+            entry.removed = true;
+            // Removal can split a group, so every neighbour seeds a group of its own.
+            LongArrayList senders = scheduler.upstream.get(key);
+            if (senders != null) {
+                scheduler.dirty.addAll(senders);
+            }
+            scheduler.unlink(entry);
+        }
+    }
+
+    // For nodes whose downstream positions changed without being re-registered.
+    public static void invalidate(BlockEntity blockEntity) {
+        if (!(blockEntity.getLevel() instanceof ServerLevel level)) {
+            return;
+        }
+
+        LogisticsTickScheduler scheduler = SCHEDULERS.get(level);
+        if (scheduler == null) {
+            return;
+        }
+
+        Entry entry = scheduler.nodes.get(blockEntity.getBlockPos().asLong());
+        if (entry != null && entry.blockEntity == blockEntity) {
+            scheduler.unlink(entry);
+            scheduler.link(entry);
+            scheduler.immediate.add(entry);
+        }
+    }
+
+    // Ticks a sleeping node on the next tick, e.g. after something changed that its schedule missed.
+    public static void wake(BlockEntity blockEntity) {
+        if (!(blockEntity.getLevel() instanceof ServerLevel level)) {
+            return;
+        }
+
+        LogisticsTickScheduler scheduler = SCHEDULERS.get(level);
+        if (scheduler == null) {
+            return;
+        }
+
+        Entry entry = scheduler.nodes.get(blockEntity.getBlockPos().asLong());
+        if (entry != null && entry.blockEntity == blockEntity) {
+            scheduler.immediate.add(entry);
+        }
+    }
+
+    // Minimum ticks between visits to a node: 1 at full fidelity, more while the server is behind.
+    public static int getStepInterval(@Nullable Level level) {
+        if (!(level instanceof ServerLevel)) {
+            return 1;
+        }
+
+        LogisticsTickScheduler scheduler = SCHEDULERS.get(level);
+        return scheduler == null ? 1 : scheduler.stepInterval;
+    }
+
+    @SubscribeEvent
+    public static void onLevelTick(TickEvent.LevelTickEvent event) {
+        // Start of tick, so anything marked dirty here is flushed at the end of the same tick.
+        if (event.phase != TickEvent.Phase.START || !(event.level instanceof ServerLevel serverLevel)) {
+            return;
+        }
+
+        LogisticsTickScheduler scheduler = SCHEDULERS.get(serverLevel);
+        if (scheduler != null) {
+            scheduler.tick(serverLevel);
+        }
+    }
+
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        if (event.getLevel() instanceof Level level) {
+            SCHEDULERS.remove(level);
+        }
+    }
+
+    private void tick(ServerLevel level) {
+        if (!dirty.isEmpty()) {
+            rebuildOrder();
+        }
+
+        updateGovernor(level);
+        long now = level.getGameTime();
+        ObjectArrayList<Entry> slot = wheel[slotOf(now)];
+        for (Entry entry : slot) {
+            // Entries rescheduled since they were filed here are stale copies.
+            if (entry.dueTick == now) {
+                due.add(entry);
+            }
+        }
+        slot.clear();
+        due.addAll(immediate);
+        immediate.clear();
+        if (due.isEmpty()) {
+            return;
+        }
+
+        due.sort(BY_RANK);
+        // Ticking may register, wake or remove nodes; those changes apply from the next tick.
+        for (Entry entry : due) {
+            if (entry.removed || entry.lastTick == now || entry.blockEntity.isRemoved()) {
+                continue;
+            }
+
+            entry.lastTick = now;
+            long nextTick;
+            if (level.shouldTickBlocksAt(ChunkPos.asLong(entry.blockEntity.getBlockPos()))) {
+                nextTick = ((Node) entry.blockEntity).tickScheduled(now);
+            } else {
+                nextTick = now + INACTIVE_RECHECK_TICKS;
+            }
+            // Keeping every due tick within one turn of the wheel makes each slot hold only this turn's entries.
+            entry.dueTick = Math.max(now + stepInterval, Math.min(now + WHEEL_SIZE - 1, nextTick));
+            wheel[slotOf(entry.dueTick)].add(entry);
+        }
+        due.clear();
+    }
+
+    private void updateGovernor(ServerLevel level) {
+        double threshold = SatiscraftoryConfig.DEGRADED_MODE_MSPT.get();
+        float averageTickTime = level.getServer().getAverageTickTime();
+        if (threshold <= 0.0D) {
+            degraded = false;
+        } else if (!degraded && averageTickTime > threshold) {
+            degraded = true;
+        } else if (degraded && averageTickTime < threshold * DEGRADED_EXIT_RATIO) {
+            degraded = false;
+        }
+        stepInterval = degraded ? SatiscraftoryConfig.DEGRADED_STEP_INTERVAL.get() : 1;
+    }
+
+    private static int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) WHEEL_SIZE);
+    }
+
+    private void link(Entry entry) {
+        LongArrayList positions = new LongArrayList(3);
+        ((Node) entry.blockEntity).collectDownstream(positions);
+        positions.rem(entry.position);
+        entry.downstream = positions.toLongArray();
+        for (long target : entry.downstream) {
+            upstream.computeIfAbsent(target, ignored -> new LongArrayList(1)).add(entry.position);
+        }
+        dirty.add(entry.position);
+    }
+
+    private void unlink(Entry entry) {
+        for (long target : entry.downstream) {
+            LongArrayList senders = upstream.get(target);
+            if (senders != null) {
+                senders.rem(entry.position);
+                if (senders.isEmpty()) {
+                    upstream.remove(target);
+                }
+            }
+            dirty.add(target);
+        }
+        entry.downstream = NO_POSITIONS;
+    }
+
+    // Each dirty group is collected along links in both directions and then ranked with an iterative
+    // post-order walk, so receivers rank before their senders. Roots are visited in position order,
+    // which keeps the order deterministic; cycles are cut wherever the walk re-enters them.
+    private void rebuildOrder() {
+        pass++;
+        LongIterator seeds = dirty.iterator();
+        while (seeds.hasNext()) {
+            Entry seed = nodes.get(seeds.nextLong());
+            if (seed != null && seed.collectedPass != pass) {
+                collectGroup(seed);
+                rankGroup();
+            }
+        }
+        dirty.clear();
+        group.clear();
+    }
+
+    private void collectGroup(Entry seed) {
+        group.clear();
+        collect(seed);
+        for (int index = 0; index < group.size(); index++) {
+            Entry entry = group.get(index);
+            for (long target : entry.downstream) {
+                collect(nodes.get(target));
+            }
+            LongArrayList senders = upstream.get(entry.position);
+            if (senders != null) {
+                for (int sender = 0; sender < senders.size(); sender++) {
+                    collect(nodes.get(senders.getLong(sender)));
+                }
+            }
+        }
+    }
+
+    private void collect(@Nullable Entry entry) {
+        if (entry != null && entry.collectedPass != pass) {
+            entry.collectedPass = pass;
+            group.add(entry);
+        }
+    }
+
+    private void rankGroup() {
+        group.sort(BY_POSITION);
+        int rank = 0;
+        for (Entry root : group) {
+            if (root.rankedPass == pass) {
+                continue;
+            }
+
+            push(root);
+            while (!stack.isEmpty()) {
+                Entry entry = stack.top();
+                if (entry.next < entry.downstream.length) {
+                    Entry child = nodes.get(entry.downstream[entry.next++]);
+                    if (child != null && child.rankedPass != pass) {
+                        push(child);
+                    }
+                    continue;
+                }
+
+                stack.pop();
+                entry.rank = rank++;
+            }
+        }
+    }
+
+    private void push(Entry entry) {
+        entry.rankedPass = pass;
+        entry.next = 0;
+        stack.push(entry);
+    }
+
+    private static final class Entry {
+        private final BlockEntity blockEntity;
+        private final long position;
+        private long[] downstream = NO_POSITIONS;
+        private int rank;
+        private long dueTick = Long.MIN_VALUE;
+        private long lastTick = Long.MIN_VALUE;
+        private boolean removed;
+        private int collectedPass;
+        private int rankedPass;
+        private int next;
+
+        private Entry(BlockEntity blockEntity, long position) {
+            this.blockEntity = blockEntity;
+            this.position = position;
+        }
+    }
+}